@@ -0,0 +1,111 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据最近的延迟分布决定 hedge 时机的 {@link RetryPolicy}
+ * <p>
+ * 每次尝试完成时把耗时记到 {@link LatencyHistogram} 中（超时的按超时时间记），
+ * 之后的尝试如果超过了指定分位数的耗时还没完成，就发起下一次尝试，并且不取消本次尝试。
+ * <p>
+ * 为了避免 hedge 本身把下游压垮，hedge 的数量通过令牌桶限制在完成的尝试数的 {@code maxHedgeRatio} 以内：
+ * 每完成一次尝试存入 {@code maxHedgeRatio} 个令牌，每次 hedge 消耗一个令牌。
+ * 样本数不足时不会提前 hedge，只在单次调用超时时才发起下一次尝试。
+ * <p>
+ * 统计是按 {@link RetryPolicy} 实例进行的，所以每个下游应该持有一个自己的实例，而不是每次调用时新建。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class AdaptiveHedgePolicy implements RetryPolicy {
+
+    private static final long WINDOW_NANOS = SECONDS.toNanos(10);
+    private static final long REFRESH_NANOS = MILLISECONDS.toNanos(100);
+    private static final long MIN_SAMPLES = 100;
+
+    private static final long TOKEN_SCALE = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN_SCALE;
+
+    private final int times;
+    private final double percentile;
+    private final long tokensPerAttempt;
+
+    private final LatencyHistogram histogram = new LatencyHistogram(WINDOW_NANOS, nanoTime());
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong refreshedAt = new AtomicLong(nanoTime() - REFRESH_NANOS);
+    private volatile long hedgeDelayNanos = -1;
+
+    AdaptiveHedgePolicy(int times, double percentile, double maxHedgeRatio) {
+        checkArgument(times >= 0, "times must be non-negative.");
+        checkArgument(percentile > 0 && percentile < 1, "percentile must be in (0, 1).");
+        checkArgument(maxHedgeRatio >= 0, "maxHedgeRatio must be non-negative.");
+        this.times = times;
+        this.percentile = percentile;
+        this.tokensPerAttempt = (long) (maxHedgeRatio * TOKEN_SCALE);
+    }
+
+    @Override
+    public long retry(int retryCount) {
+        return retryCount <= times ? 0 : NO_RETRY;
+    }
+
+    @Override
+    public boolean hedge() {
+        return true;
+    }
+
+    @Override
+    public long hedgeDelay(long singleCallTimeoutMs) {
+        long now = nanoTime();
+        long last = refreshedAt.get();
+        if (now - last >= REFRESH_NANOS && refreshedAt.compareAndSet(last, now)) {
+            hedgeDelayNanos = histogram.percentile(percentile, MIN_SAMPLES, now);
+        }
+        long delay = hedgeDelayNanos;
+        if (delay < 0) {
+            return singleCallTimeoutMs;
+        }
+        // 向上取整到毫秒
+        return max(1L, NANOSECONDS.toMillis(delay + MILLISECONDS.toNanos(1) - 1));
+    }
+
+    @Override
+    public boolean acquireHedge() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN_SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN_SCALE));
+        return true;
+    }
+
+    @Override
+    public void releaseHedge() {
+        tokens.accumulateAndGet(TOKEN_SCALE, (current, delta) -> min(current + delta, MAX_TOKENS));
+    }
+
+    @Override
+    public void onAttemptComplete(long costNanos) {
+        histogram.record(costNanos, nanoTime());
+        if (tokensPerAttempt > 0 && tokens.get() < MAX_TOKENS) {
+            tokens.accumulateAndGet(tokensPerAttempt, (current, delta) -> min(current + delta, MAX_TOKENS));
+        }
+    }
+
+    /**
+     * 用于测试
+     */
+    long samples() {
+        return histogram.count(nanoTime());
+    }
+}
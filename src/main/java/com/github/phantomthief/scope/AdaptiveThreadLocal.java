@@ -0,0 +1,48 @@
+package com.github.phantomthief.scope;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+
+/**
+ * 按当前线程的类型选择实现：在 {@link FastThreadLocalThread}（例如 Netty 的 EventLoop 线程）上使用 {@link NettyFastThreadLocal}，
+ * 其它线程（包括普通线程池和 JDK 21+ 的虚拟线程）上使用 {@link JdkThreadLocal}
+ * <p>
+ * FastThreadLocal 只有在 {@link FastThreadLocalThread} 上才有快速路径，在其它线程上反而需要先通过一个 jdk thread local 找到
+ * InternalThreadLocalMap，比直接使用 jdk thread local 更慢，也会为每个线程多分配一个 InternalThreadLocalMap。
+ * <p>
+ * 同一个线程总是访问同一个实现，所以不会出现写入和读取落在不同实现上的情况。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class AdaptiveThreadLocal<T> implements MyThreadLocal<T> {
+
+    private final NettyFastThreadLocal<T> fastThreadLocal = new NettyFastThreadLocal<>();
+    private final JdkThreadLocal<T> jdkThreadLocal = new JdkThreadLocal<>();
+
+    @Override
+    public T get() {
+        if (Thread.currentThread() instanceof FastThreadLocalThread) {
+            return fastThreadLocal.get();
+        } else {
+            return jdkThreadLocal.get();
+        }
+    }
+
+    @Override
+    public void set(T value) {
+        if (Thread.currentThread() instanceof FastThreadLocalThread) {
+            fastThreadLocal.set(value);
+        } else {
+            jdkThreadLocal.set(value);
+        }
+    }
+
+    @Override
+    public void remove() {
+        if (Thread.currentThread() instanceof FastThreadLocalThread) {
+            fastThreadLocal.remove();
+        } else {
+            jdkThreadLocal.remove();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.phantomthief.scope;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 给已有的 {@link RetryPolicy} 加上 {@link RetryBudget}，其他行为都委托给原来的策略
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class BudgetedRetryPolicy implements RetryPolicy {
+
+    private final RetryPolicy delegate;
+    private final RetryBudget retryBudget;
+
+    BudgetedRetryPolicy(@Nonnull RetryPolicy delegate, @Nonnull RetryBudget retryBudget) {
+        this.delegate = delegate;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public long retry(int retryCount) {
+        return delegate.retry(retryCount);
+    }
+
+    @Override
+    public boolean hedge() {
+        return delegate.hedge();
+    }
+
+    @Override
+    public boolean triggerGetOnTimeout() {
+        return delegate.triggerGetOnTimeout();
+    }
+
+    @Override
+    public boolean abortRetry(Throwable t) {
+        return delegate.abortRetry(t);
+    }
+
+    @Override
+    public long hedgeDelay(long singleCallTimeoutMs) {
+        return delegate.hedgeDelay(singleCallTimeoutMs);
+    }
+
+    @Override
+    public boolean acquireHedge() {
+        return delegate.acquireHedge();
+    }
+
+    @Override
+    public void releaseHedge() {
+        delegate.releaseHedge();
+    }
+
+    @Override
+    public void onAttemptComplete(long costNanos) {
+        delegate.onAttemptComplete(costNanos);
+    }
+
+    @Override
+    public RetryBudget retryBudget() {
+        return retryBudget;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.phantomthief.scope;
+
+import static java.lang.Math.max;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 基于 {@link AtomicReferenceArray} 的线程安全实现
+ * <p>
+ * 数组只在写入超出当前长度的下标时扩容，扩容时按当前已分配的 {@link ScopeKey} 总数分配，所以通常只会发生一次。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class ConcurrentScopeStorage implements ScopeStorage {
+
+    private static final AtomicReferenceArray<Object> EMPTY_SLOTS = new AtomicReferenceArray<>(0);
+
+    /**
+     * 扩容时旧数组中的每个槽位都会被替换为这个标记，读写时遇到它需要重新读取 {@link #slots}
+     */
+    private static final Object MOVED = new Object();
+
+    private volatile AtomicReferenceArray<Object> slots = EMPTY_SLOTS;
+
+    @Override
+    public Object get(int index) {
+        while (true) {
+            AtomicReferenceArray<Object> current = slots;
+            if (index >= current.length()) {
+                return null;
+            }
+            Object value = current.get(index);
+            if (value != MOVED) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        if (value == null && index >= slots.length()) {
+            return;
+        }
+        while (true) {
+            AtomicReferenceArray<Object> current = ensureCapacity(index);
+            Object old = current.get(index);
+            if (old != MOVED && current.compareAndSet(index, old, value)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(int index, Object value) {
+        while (true) {
+            AtomicReferenceArray<Object> current = ensureCapacity(index);
+            if (current.compareAndSet(index, null, value)) {
+                return null;
+            }
+            Object exist = current.get(index);
+            if (exist != MOVED && exist != null) {
+                return exist;
+            }
+        }
+    }
+
+    @Override
+    public void replace(int index, Object expect, Object update) {
+        while (true) {
+            AtomicReferenceArray<Object> current = slots;
+            if (index >= current.length() || current.compareAndSet(index, expect, update)
+                    || current.get(index) != MOVED) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Object[] snapshot() {
+        Object[] result = new Object[slots.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 原地清空，保留已经扩容的数组
+     */
+    @Override
+    public void clear() {
+        AtomicReferenceArray<Object> current = slots;
+        for (int i = 0; i < current.length(); i++) {
+            if (current.get(i) != null) {
+                current.set(i, null);
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Object> ensureCapacity(int index) {
+        AtomicReferenceArray<Object> current = slots;
+        if (index < current.length()) {
+            return current;
+        }
+        synchronized (this) {
+            current = slots;
+            if (index < current.length()) {
+                return current;
+            }
+            int length = current.length();
+            AtomicReferenceArray<Object> newSlots = new AtomicReferenceArray<>(
+                    max(max(index + 1, length << 1), ScopeKey.allocatedCount()));
+            for (int i = 0; i < length; i++) {
+                newSlots.set(i, current.getAndSet(i, MOVED));
+            }
+            slots = newSlots;
+            return newSlots;
+        }
+    }
+}
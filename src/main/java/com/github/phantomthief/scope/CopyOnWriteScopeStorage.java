@@ -0,0 +1,103 @@
+package com.github.phantomthief.scope;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 写时复制的实现，读取只有一次 volatile 读，写入时复制整个数组并通过 CAS 替换
+ * <p>
+ * 因为数组从不原地修改，{@link #snapshot()} 只需要返回当前数组，这也是 {@link Scope#snapshot()} 的实现基础
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class CopyOnWriteScopeStorage implements ScopeStorage {
+
+    private static final Object[] EMPTY_SLOTS = {};
+
+    private static final AtomicReferenceFieldUpdater<CopyOnWriteScopeStorage, Object[]> SLOTS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteScopeStorage.class, Object[].class, "slots");
+
+    private volatile Object[] slots;
+
+    CopyOnWriteScopeStorage() {
+        this(EMPTY_SLOTS);
+    }
+
+    /**
+     * @param slots 初始数据，之后不会被修改，所以可以和其它 {@link CopyOnWriteScopeStorage} 共享
+     */
+    CopyOnWriteScopeStorage(Object[] slots) {
+        this.slots = slots;
+    }
+
+    @Override
+    public Object get(int index) {
+        Object[] current = slots;
+        return index < current.length ? current[index] : null;
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        while (true) {
+            Object[] current = slots;
+            if (value == null && (index >= current.length || current[index] == null)) {
+                return;
+            }
+            if (update(current, index, value)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(int index, Object value) {
+        while (true) {
+            Object[] current = slots;
+            Object exist = index < current.length ? current[index] : null;
+            if (exist != null) {
+                return exist;
+            }
+            if (update(current, index, value)) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void replace(int index, Object expect, Object update) {
+        while (true) {
+            Object[] current = slots;
+            if (index >= current.length || current[index] != expect) {
+                return;
+            }
+            if (update(current, index, update)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 数组从不原地修改，直接返回当前数组即可
+     */
+    @Override
+    public Object[] snapshot() {
+        return slots;
+    }
+
+    /**
+     * 数组可能和快照共享，不能原地清空
+     */
+    @Override
+    public void clear() {
+        slots = EMPTY_SLOTS;
+    }
+
+    private boolean update(Object[] current, int index, Object value) {
+        Object[] newSlots = copyOf(current, max(max(index + 1, current.length), ScopeKey.allocatedCount()));
+        newSlots[index] = value;
+        return SLOTS_UPDATER.compareAndSet(this, current, newSlots);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.min;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的延迟直方图，只统计最近一段时间的数据
+ * <p>
+ * 桶按对数-线性划分：每个 2 的幂区间再等分成 8 个子桶，误差不超过 12.5%，
+ * 覆盖 0 ~ 2^40 纳秒（约 18 分钟），超出的都记到最后一个桶。
+ * <p>
+ * 内部有两个窗口轮换：记录写入当前窗口，统计时合并当前窗口和上一个窗口，
+ * 所以统计的是最近一到两个 {@code windowNanos} 内的数据。轮换时被清空的窗口上并发写入的少量数据可能丢失，
+ * 对于估算分位数来说这是可以接受的。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long windowNanos;
+    private final AtomicLongArray[] windows = {new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS)};
+    private final AtomicLong windowStart;
+    private volatile int current;
+
+    LatencyHistogram(long windowNanos, long nowNanos) {
+        checkArgument(windowNanos > 0, "windowNanos must be positive.");
+        this.windowNanos = windowNanos;
+        this.windowStart = new AtomicLong(nowNanos);
+    }
+
+    void record(long valueNanos, long nowNanos) {
+        rotateIfNeeded(nowNanos);
+        windows[current].incrementAndGet(index(Math.max(0L, valueNanos)));
+    }
+
+    /**
+     * @param percentile 0 ~ 1 之间，比如 0.95
+     * @return 对应分位数的上界，单位：纳秒；如果样本数小于 {@code minSamples} 返回 -1
+     */
+    long percentile(double percentile, long minSamples, long nowNanos) {
+        long total = count(nowNanos);
+        if (total == 0 || total < minSamples) {
+            return -1;
+        }
+        AtomicLongArray first = windows[0];
+        AtomicLongArray second = windows[1];
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += first.get(i) + second.get(i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return 最近一到两个窗口内的样本数
+     */
+    long count(long nowNanos) {
+        rotateIfNeeded(nowNanos);
+        AtomicLongArray first = windows[0];
+        AtomicLongArray second = windows[1];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += first.get(i) + second.get(i);
+        }
+        return total;
+    }
+
+    private void rotateIfNeeded(long nowNanos) {
+        long start = windowStart.get();
+        if (nowNanos - start < windowNanos) {
+            return;
+        }
+        if (windowStart.compareAndSet(start, nowNanos)) {
+            int next = current ^ 1;
+            AtomicLongArray window = windows[next];
+            if (nowNanos - start >= windowNanos * 2) {
+                // 两个窗口都过期了
+                clear(windows[current]);
+            }
+            clear(window);
+            current = next;
+        }
+    }
+
+    private static void clear(AtomicLongArray window) {
+        for (int i = 0; i < BUCKETS; i++) {
+            window.set(i, 0);
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
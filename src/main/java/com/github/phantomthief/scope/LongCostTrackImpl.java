@@ -0,0 +1,87 @@
+package com.github.phantomthief.scope;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link LongCostTrack} 的实现，本身就是 {@link TimingWheel} 的节点，同时带着挂到各个无锁栈上需要的指针，
+ * 所以注册、关闭和回收都不需要额外分配内存
+ * <p>
+ * 状态变化：{@link #FREE} -> {@link #ACTIVE} -> {@link #CLOSED} -> {@link #FREE}，
+ * 只有 {@link LongCostTracker} 在把节点移出时间轮之后才会把它放回 {@link LongCostTracker.Pool}；
+ * 到期时还没有关闭的变成 {@link #EXPIRED}，业务可能还持有它，所以不会再被复用
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class LongCostTrackImpl extends TimingWheel.Node implements LongCostTrack {
+
+    static final int FREE = 0;
+    static final int ACTIVE = 1;
+    static final int CLOSED = 2;
+    static final int EXPIRED = 3;
+
+    private static final AtomicIntegerFieldUpdater<LongCostTrackImpl> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(LongCostTrackImpl.class, "state");
+
+    /**
+     * 为 {@code null} 时不会被回收
+     */
+    @Nullable
+    final LongCostTracker.Pool pool;
+
+    Consumer<Duration> runnable;
+    long start;
+    Scope scope;
+
+    private volatile int state;
+
+    LongCostTrackImpl pendingNext;
+    LongCostTrackImpl cancelledNext;
+    LongCostTrackImpl freeNext;
+
+    LongCostTrackImpl(@Nullable LongCostTracker.Pool pool) {
+        this.pool = pool;
+    }
+
+    void open(Consumer<Duration> runnable, long start, long deadline, Scope scope) {
+        this.runnable = runnable;
+        this.start = start;
+        this.scope = scope;
+        deadlineNanos(deadline);
+        state = ACTIVE;
+    }
+
+    boolean isActive() {
+        return state == ACTIVE;
+    }
+
+    /**
+     * 到期上报前调用，成功之后 {@link #close()} 不再有任何效果
+     *
+     * @return 是否还没有关闭
+     */
+    boolean expire() {
+        return STATE_UPDATER.compareAndSet(this, ACTIVE, EXPIRED);
+    }
+
+    /**
+     * 释放对业务对象的引用，之后才能放回 {@link #pool}
+     */
+    void free() {
+        runnable = null;
+        scope = null;
+        state = FREE;
+    }
+
+    @Override
+    public void close() {
+        if (STATE_UPDATER.compareAndSet(this, ACTIVE, CLOSED)) {
+            // 希望业务调用这个，这样可以更早的回收，而不用等到到期时才移出时间轮
+            LongCostTracker.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.runWithExistScope;
+import static com.github.phantomthief.util.MoreSuppliers.lazy;
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.MIN_PRIORITY;
+import static java.time.Duration.ofNanos;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link ScopeUtils#trackLongCost} 的实现
+ * <p>
+ * 新增和关闭的追踪分别压入两个无锁栈（节点自带指针，不需要分配内存），由持有 {@link #WHEEL_LOCK} 的线程一次性取走，
+ * 再放入或移出 {@link #WHEEL}。正常情况下这是 long-cost-track 线程的工作；开启回收时，
+ * 如果某个线程的 {@link Pool} 用完了，它也会尝试顺手做一次，这样回收不需要等到下一个 tick。
+ * <p>
+ * 通过系统属性 {@link #LONG_COST_TRACK_POOL_SIZE} 开启回收后，每个线程最多持有这么多个可复用的追踪，
+ * 稳态下开启和关闭追踪都不会分配内存。注意开启回收后，{@link LongCostTrack#close()} 之后就不能再使用这个对象了，
+ * 因为它随时可能被另一次 {@link ScopeUtils#trackLongCost} 复用。
+ * <p>
+ * 时间轮中的追踪是强引用的（节点就是追踪本身，弱引用需要为每个追踪额外分配一个 {@link java.lang.ref.WeakReference}），
+ * 没有关闭的追踪会一直保留到超时上报为止。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class LongCostTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LongCostTracker.class);
+
+    /**
+     * {@link ScopeUtils#trackLongCost} 的检查精度，单位：ms，默认 100ms
+     */
+    static final String LONG_COST_TRACK_TICK_MS = "LONG_COST_TRACK_TICK_MS";
+
+    /**
+     * 每个线程最多复用的追踪数量，默认 0，也就是不复用
+     */
+    static final String LONG_COST_TRACK_POOL_SIZE = "LONG_COST_TRACK_POOL_SIZE";
+
+    private static final long TICK_NANOS = MILLISECONDS.toNanos(max(1L, Long.getLong(LONG_COST_TRACK_TICK_MS, 100L)));
+    private static final int POOL_SIZE = max(0, Integer.getInteger(LONG_COST_TRACK_POOL_SIZE, 0));
+
+    private static final AtomicReference<LongCostTrackImpl> PENDING = new AtomicReference<>();
+    private static final AtomicReference<LongCostTrackImpl> CANCELLED = new AtomicReference<>();
+
+    /**
+     * 只在持有 {@link #WHEEL_LOCK} 时访问
+     */
+    private static final TimingWheel<LongCostTrackImpl> WHEEL = new TimingWheel<>(TICK_NANOS, nanoTime());
+    private static final ReentrantLock WHEEL_LOCK = new ReentrantLock();
+
+    private static final ThreadLocal<Pool> POOL = ThreadLocal.withInitial(() -> new Pool(POOL_SIZE));
+
+    private static final Supplier<ScheduledFuture<?>> SCHEDULER = lazy(() ->
+            newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("long-cost-track")
+                    .setPriority(MIN_PRIORITY)
+                    .build())
+                    .scheduleWithFixedDelay(LongCostTracker::doReport, TICK_NANOS, TICK_NANOS, NANOSECONDS));
+
+    private LongCostTracker() {
+    }
+
+    static LongCostTrack track(Duration timeoutForReport, Consumer<Duration> onTimeoutReportRunnable,
+            @Nullable Scope scope) {
+        return track(timeoutForReport, onTimeoutReportRunnable, scope, POOL_SIZE > 0 ? POOL.get() : null);
+    }
+
+    static LongCostTrack track(Duration timeoutForReport, Consumer<Duration> onTimeoutReportRunnable,
+            @Nullable Scope scope, @Nullable Pool pool) {
+        SCHEDULER.get();
+        LongCostTrackImpl track = pool != null ? pool.acquire() : new LongCostTrackImpl(null);
+        long nano = nanoTime();
+        track.open(onTimeoutReportRunnable, nano, nano + timeoutForReport.toNanos(), scope);
+        LongCostTrackImpl head;
+        do {
+            head = PENDING.get();
+            track.pendingNext = head;
+        } while (!PENDING.compareAndSet(head, track));
+        return track;
+    }
+
+    static void cancel(LongCostTrackImpl track) {
+        LongCostTrackImpl head;
+        do {
+            head = CANCELLED.get();
+            track.cancelledNext = head;
+        } while (!CANCELLED.compareAndSet(head, track));
+    }
+
+    private static void doReport() {
+        WHEEL_LOCK.lock();
+        try {
+            drain();
+            long now = nanoTime();
+            WHEEL.advance(now, track -> {
+                if (!track.expire()) {
+                    return;
+                }
+                Consumer<Duration> runnable = track.runnable;
+                Scope scope = track.scope;
+                // 业务可能一直不关闭，这里先释放对回调和 Scope 的引用，并让所属的池补充一个新的
+                track.runnable = null;
+                track.scope = null;
+                if (track.pool != null) {
+                    track.pool.onExpired();
+                }
+                runWithExistScope(scope, () -> {
+                    try {
+                        runnable.accept(ofNanos(now - track.start));
+                    } catch (Throwable e) {
+                        logger.error("", e);
+                    }
+                });
+            });
+        } finally {
+            WHEEL_LOCK.unlock();
+        }
+    }
+
+    private static void tryDrain() {
+        if (WHEEL_LOCK.tryLock()) {
+            try {
+                drain();
+            } finally {
+                WHEEL_LOCK.unlock();
+            }
+        }
+    }
+
+    /**
+     * 必须先取走关闭的追踪再取走新增的：一个追踪一定先进入 {@link #PENDING} 才会进入 {@link #CANCELLED}，
+     * 所以这里取到的每个关闭的追踪，要么已经在时间轮中，要么在这次取到的新增追踪中，移出后就可以安全的回收了
+     */
+    private static void drain() {
+        LongCostTrackImpl cancelled = CANCELLED.getAndSet(null);
+        LongCostTrackImpl pending = PENDING.getAndSet(null);
+        while (pending != null) {
+            LongCostTrackImpl next = pending.pendingNext;
+            pending.pendingNext = null;
+            if (pending.isActive()) {
+                WHEEL.add(pending);
+            }
+            pending = next;
+        }
+        while (cancelled != null) {
+            LongCostTrackImpl next = cancelled.cancelledNext;
+            cancelled.cancelledNext = null;
+            WHEEL.remove(cancelled);
+            if (cancelled.pool != null) {
+                cancelled.free();
+                cancelled.pool.release(cancelled);
+            }
+            cancelled = next;
+        }
+    }
+
+    /**
+     * 每个线程一个，只有所属线程会取出，其他线程（{@link #drain()}）通过 {@link #released} 归还；
+     * 到期时还没有关闭的追踪不会再归还，通过 {@link #onExpired()} 记下，之后由所属线程补充新的，所以池不会越用越少
+     */
+    static final class Pool {
+
+        private final int capacity;
+        private final AtomicReference<LongCostTrackImpl> released = new AtomicReference<>();
+        private final AtomicInteger expired = new AtomicInteger();
+        private LongCostTrackImpl free;
+        private int allocated;
+
+        Pool(int capacity) {
+            this.capacity = capacity;
+        }
+
+        LongCostTrackImpl acquire() {
+            LongCostTrackImpl track = poll();
+            if (track == null && allocated >= capacity) {
+                tryDrain();
+                track = poll();
+            }
+            if (track != null) {
+                return track;
+            }
+            if (allocated >= capacity && expired.get() > 0) {
+                allocated -= expired.getAndSet(0);
+            }
+            if (allocated < capacity) {
+                allocated++;
+                return new LongCostTrackImpl(this);
+            }
+            // 所有可复用的追踪都在使用中，退化为不复用
+            return new LongCostTrackImpl(null);
+        }
+
+        private LongCostTrackImpl poll() {
+            LongCostTrackImpl track = free;
+            if (track == null && released.get() != null) {
+                track = released.getAndSet(null);
+            }
+            if (track != null) {
+                free = track.freeNext;
+                track.freeNext = null;
+            }
+            return track;
+        }
+
+        void onExpired() {
+            expired.incrementAndGet();
+        }
+
+        void release(LongCostTrackImpl track) {
+            LongCostTrackImpl head;
+            do {
+                head = released.get();
+                track.freeNext = head;
+            } while (!released.compareAndSet(head, track));
+        }
+    }
+}
@@ -13,21 +13,35 @@ class MyThreadLocalFactory {
 
     static final String USE_FAST_THREAD_LOCAL = "USE_FAST_THREAD_LOCAL";
 
+    /**
+     * 只有设置了 {@code -DUSE_FAST_THREAD_LOCAL=true} 并且 classpath 中有 netty 时才使用 {@link AdaptiveThreadLocal}，
+     * 默认总是使用 {@link JdkThreadLocal}
+     */
     static <T> SubstituteThreadLocal<T> create() {
         MyThreadLocal<T> real = null;
         if (Boolean.getBoolean(USE_FAST_THREAD_LOCAL)) {
             try {
-                NettyFastThreadLocal<T> nettyFastThreadLocal = new NettyFastThreadLocal<>();
-                logger.info("using fast thread local as scope implements.");
-                real = nettyFastThreadLocal;
+                MyThreadLocal<T> fastThreadLocal = newFastThreadLocal();
+                logger.info("using adaptive fast thread local as scope implements.");
+                real = fastThreadLocal;
             } catch (Error e) {
                 logger.warn("cannot use fast thread local as scope implements.");
             }
         }
-        // TODO auto adaptive thread local between jdk thread local and netty fast thread local?
         if (real == null) {
             real = new JdkThreadLocal<>();
         }
         return new SubstituteThreadLocal<>(real);
     }
+
+    /**
+     * @throws Error if netty is not in classpath.
+     */
+    static <T> MyThreadLocal<T> newFastThreadLocal() {
+        return new AdaptiveThreadLocal<>();
+    }
+
+    static boolean isFastThreadLocal(MyThreadLocal<?> threadLocal) {
+        return threadLocal instanceof AdaptiveThreadLocal;
+    }
 }
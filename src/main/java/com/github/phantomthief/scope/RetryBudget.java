@@ -0,0 +1,137 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.System.nanoTime;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * 重试预算，限制一段时间内重试（包括 hedge）的数量不超过请求数的一定比例，避免下游变慢时被自己的重试打垮
+ * <p>
+ * 使用方法:
+ * <pre>{@code
+ *
+ * class MyClass {
+ *
+ *   // 每个下游一个，重试最多增加 10% 的请求
+ *   private final RetryPolicy retryPolicy = retryNTimes(3).withBudget(RetryBudget.create(0.1));
+ * }
+ *
+ * }
+ * </pre>
+ * <p>
+ * 统计基于滑动窗口：窗口分成 {@link #BUCKETS} 个桶，每个桶用 {@link LongAdder} 计数，多线程下记录请求的开销很小；
+ * 只有在需要重试时才会汇总所有的桶。汇总和记录不是原子的，高并发下实际的重试数量可能略微超出预算。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+public final class RetryBudget {
+
+    private static final int BUCKETS = 10;
+    private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+    private static final long DEFAULT_MIN_RETRIES = 10;
+
+    private final double maxRetryRatio;
+    private final long minRetries;
+    private final long bucketNanos;
+    private final long startNanos = nanoTime();
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+
+    private RetryBudget(double maxRetryRatio, long windowNanos, long minRetries) {
+        this.maxRetryRatio = maxRetryRatio;
+        this.minRetries = minRetries;
+        this.bucketNanos = Math.max(1L, windowNanos / BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 最近 10 秒内重试数量不超过请求数的 {@code maxRetryRatio}，另外总是允许 10 次重试，这样请求量很小时也能重试
+     */
+    public static RetryBudget create(@Nonnegative double maxRetryRatio) {
+        return create(maxRetryRatio, DEFAULT_WINDOW, DEFAULT_MIN_RETRIES);
+    }
+
+    /**
+     * @param maxRetryRatio 重试数量占请求数的最大比例，比如 0.1
+     * @param window 统计的时间窗口
+     * @param minRetries 每个窗口内不受比例限制的重试数量
+     */
+    public static RetryBudget create(@Nonnegative double maxRetryRatio, @Nonnull Duration window,
+            @Nonnegative long minRetries) {
+        checkArgument(maxRetryRatio >= 0, "maxRetryRatio must be non-negative.");
+        checkArgument(!window.isNegative() && !window.isZero(), "window must be positive.");
+        checkArgument(minRetries >= 0, "minRetries must be non-negative.");
+        return new RetryBudget(maxRetryRatio, window.toNanos(), minRetries);
+    }
+
+    /**
+     * 每次调用（不包括重试）记录一次
+     */
+    void recordRequest() {
+        current(nanoTime()).requests.increment();
+    }
+
+    /**
+     * @return 如果预算足够，记录一次重试并返回 {@code true}
+     */
+    boolean tryAcquireRetry() {
+        long now = nanoTime();
+        long epoch = (now - startNanos) / bucketNanos;
+        long requests = 0;
+        long retries = 0;
+        for (Bucket bucket : buckets) {
+            if (epoch - bucket.epoch < BUCKETS) {
+                requests += bucket.requests.sum();
+                retries += bucket.retries.sum();
+            }
+        }
+        if (retries >= minRetries + requests * maxRetryRatio) {
+            return false;
+        }
+        current(now).retries.increment();
+        return true;
+    }
+
+    /**
+     * 归还一次 {@link #tryAcquireRetry} 拿到但最终没有发起的重试
+     * <p>
+     * 从当前的桶里扣减：窗口内的总数仍然是对的；如果当前的桶刚刚轮换过、已经没有重试可扣了，就不再归还，
+     * 避免计数变成负数，让之后的重试超出预算
+     */
+    void releaseRetry() {
+        LongAdder retries = current(nanoTime()).retries;
+        if (retries.sum() > 0) {
+            retries.decrement();
+        }
+    }
+
+    private Bucket current(long now) {
+        long epoch = (now - startNanos) / bucketNanos;
+        Bucket bucket = buckets[(int) (epoch % BUCKETS)];
+        long bucketEpoch = bucket.epoch;
+        if (bucketEpoch != epoch && Bucket.EPOCH_UPDATER.compareAndSet(bucket, bucketEpoch, epoch)) {
+            // 这个桶上一次使用是在之前的窗口，清空后复用；清空前并发写入的少量计数会丢失
+            bucket.requests.reset();
+            bucket.retries.reset();
+        }
+        return bucket;
+    }
+
+    private static final class Bucket {
+
+        private static final AtomicLongFieldUpdater<Bucket> EPOCH_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "epoch");
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private volatile long epoch;
+    }
+}
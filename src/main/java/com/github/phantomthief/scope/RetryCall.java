@@ -0,0 +1,408 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.supplyWithExistScope;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.phantomthief.scope.RetryTimer.Timeout;
+import com.github.phantomthief.util.ThrowableSupplier;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * {@link ScopeAsyncRetry#callWithRetry} 一次调用的状态，本身就是返回给调用方的 future
+ * <p>
+ * 每次尝试只有一个 {@link Attempt} 对象，它同时是被调用 future 的 listener 和超时检测的定时任务，
+ * 由 {@link Attempt#state} 上的 CAS 决定是先完成还是先超时；最终结果确定后（{@link #afterDone()}），
+ * 所有还在进行的尝试、超时检测和重试定时任务都会被取消并释放。
+ * <p>
+ * 如果调用方的 {@link Scope} 设置了截止时间（{@link Scope#setDeadlineAfter}），每次尝试的超时时间不会超过剩余的时间，
+ * 剩余的时间不够一次尝试时不再重试或者 hedge，直接使用最后一次尝试的结果。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class RetryCall<T, X extends Throwable> extends AbstractFuture<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryCall.class);
+
+    /**
+     * 距离截止时间小于这个值时，不再发起新的尝试
+     */
+    private static final long MIN_ATTEMPT_MS = 1;
+
+    private final RetryTimer timer;
+    private final Executor callbackExecutor;
+    private final ThrowableSupplier<ListenableFuture<T>, X> func;
+    private final Scope scope;
+    private final long singleCallTimeoutMs;
+    private final RetryPolicy retryPolicy;
+    @Nullable
+    private final FutureCallback<T> eachRetryCallback;
+    @Nullable
+    private final RetryBudget retryBudget;
+
+    /**
+     * 尝试是一个接一个开始的，同一时刻只有一个线程修改
+     */
+    private volatile int retryTime;
+    private volatile Attempt<T> lastAttempt;
+    private volatile Timeout delay;
+
+    RetryCall(RetryTimer timer, Executor callbackExecutor, ThrowableSupplier<ListenableFuture<T>, X> func,
+            @Nullable Scope scope, long singleCallTimeoutMs, RetryPolicy retryPolicy,
+            @Nullable FutureCallback<T> eachRetryCallback) {
+        this.timer = timer;
+        this.callbackExecutor = callbackExecutor;
+        this.func = func;
+        this.scope = scope;
+        this.singleCallTimeoutMs = singleCallTimeoutMs;
+        this.retryPolicy = retryPolicy;
+        this.eachRetryCallback = eachRetryCallback;
+        this.retryBudget = retryPolicy.retryBudget();
+        if (retryBudget != null) {
+            retryBudget.recordRequest();
+        }
+    }
+
+    private boolean tryAcquireRetry() {
+        return retryBudget == null || retryBudget.tryAcquireRetry();
+    }
+
+    private void releaseRetry() {
+        if (retryBudget != null) {
+            retryBudget.releaseRetry();
+        }
+    }
+
+    /**
+     * @return 距离调用方 {@link Scope} 的截止时间还剩多少毫秒，没有截止时间时返回 {@link Long#MAX_VALUE}
+     */
+    private long remainingMs() {
+        if (scope == null) {
+            return Long.MAX_VALUE;
+        }
+        long remainingNanos = scope.remainingNanos();
+        return remainingNanos == Long.MAX_VALUE ? Long.MAX_VALUE : NANOSECONDS.toMillis(remainingNanos);
+    }
+
+    /**
+     * @return 等待 {@code delayMs} 之后，是否还来得及发起一次尝试
+     */
+    private boolean hasTimeForAttempt(long delayMs) {
+        return remainingMs() - delayMs >= MIN_ATTEMPT_MS;
+    }
+
+    /**
+     * 开始一次新的尝试
+     */
+    void start() {
+        // 如果外部主动 cancel 了，那就不用再做后边没完成的 retry 了
+        if (isDone()) {
+            return;
+        }
+        long remainingMs = remainingMs();
+        if (remainingMs < MIN_ATTEMPT_MS) {
+            // 已经到截止时间了，调用方不会再等这个结果
+            setException(new TimeoutException("scope deadline exceeded."));
+            return;
+        }
+        int currentRetryTime = retryTime + 1;
+        retryTime = currentRetryTime;
+        Attempt<T> attempt = new Attempt<>(this, min(singleCallTimeoutMs, remainingMs),
+                retryPolicy.retry(currentRetryTime), retryPolicy.hedge(), retryPolicy.triggerGetOnTimeout(),
+                lastAttempt);
+        lastAttempt = attempt;
+        attempt.start();
+        if (isDone()) {
+            attempt.release();
+        }
+    }
+
+    private void retry(long retryInterval) {
+        if (retryInterval > 0) {
+            // 延迟一会儿再重试，定时器线程只负责触发，重试本身还是在 callbackExecutor 中执行
+            Timeout timeout = timer.schedule(() -> callbackExecutor.execute(this::start), retryInterval);
+            delay = timeout;
+            if (isDone()) {
+                timeout.cancel();
+            }
+        } else {
+            // 直接重试
+            start();
+        }
+    }
+
+    /**
+     * 最终结果确定后（包括外部主动 cancel），还没完成的尝试和定时任务都没用了，直接释放掉
+     */
+    @Override
+    protected void afterDone() {
+        Timeout timeout = delay;
+        if (timeout != null) {
+            timeout.cancel();
+            delay = null;
+        }
+        for (Attempt<T> attempt = lastAttempt; attempt != null; attempt = attempt.previous) {
+            attempt.release();
+        }
+        lastAttempt = null;
+    }
+
+    private static final class Attempt<T> implements Runnable {
+
+        private static final int RUNNING = 0;
+        private static final int COMPLETED = 1;
+        private static final int TIMED_OUT = 2;
+        /**
+         * 已经提前发起了下一次尝试，本次尝试还在进行；和 {@link #RUNNING} 之间的 CAS 保证 hedge 和本次尝试结束只有一个生效
+         */
+        private static final int HEDGED = 3;
+        /**
+         * 最终结果已经确定，本次尝试被放弃；之后 cancel 触发的 {@link #run()} 不再当作一次完成的尝试，
+         * 既不记录耗时，也不通知 eachRetryCallback
+         */
+        private static final int RELEASED = 4;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Attempt> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Attempt.class, "state");
+
+        private final RetryCall<T, ?> call;
+        /**
+         * 单次调用的超时时间，已经按截止时间截断过
+         */
+        private final long timeoutMs;
+        private final long retryInterval;
+        private final boolean hedge;
+        private final boolean triggerGetOnTimeout;
+        private final Attempt<T> previous;
+
+        private volatile int state;
+        private volatile ListenableFuture<T> calling;
+        private volatile Timeout timeout;
+
+        private long startNanos;
+        /**
+         * 提前 hedge 的时间，只有小于单次调用超时时间时才有意义
+         */
+        private long hedgeDelayMs;
+        /**
+         * 为 true 时，下一次定时任务触发的是提前 hedge 而不是超时
+         */
+        private volatile boolean hedgeArmed;
+        /**
+         * 结束时的 CAS 是从 {@link #HEDGED} 开始的，本次尝试失败后不需要再重试；在 {@link #finish} 之前写入
+         */
+        private boolean hedged;
+
+        /**
+         * 本次尝试的结果，在 {@link #state} 离开 {@link #RUNNING} 之后设置，交给 callbackExecutor 处理
+         */
+        private T result;
+        private Throwable failure;
+
+        Attempt(RetryCall<T, ?> call, long timeoutMs, long retryInterval, boolean hedge,
+                boolean triggerGetOnTimeout, @Nullable Attempt<T> previous) {
+            this.call = call;
+            this.timeoutMs = timeoutMs;
+            this.retryInterval = retryInterval;
+            this.hedge = hedge;
+            this.triggerGetOnTimeout = triggerGetOnTimeout;
+            this.previous = previous;
+        }
+
+        void start() {
+            startNanos = nanoTime();
+            ListenableFuture<T> future;
+            try {
+                future = checkNotNull(supplyWithExistScope(call.scope, call.func));
+            } catch (Throwable t) {
+                state = COMPLETED;
+                finish(null, t);
+                return;
+            }
+            calling = future;
+            if (!future.isDone()) {
+                long delayMs = timeoutMs;
+                if (hedge && retryInterval >= 0) {
+                    delayMs = max(0L, min(call.retryPolicy.hedgeDelay(timeoutMs), timeoutMs));
+                    hedgeDelayMs = delayMs;
+                    hedgeArmed = delayMs < timeoutMs;
+                }
+                // 看是先超时（或者先到提前 hedge 的时间）还是先执行完成或者执行抛异常
+                timeout = call.timer.schedule(this, delayMs);
+            }
+            future.addListener(this, directExecutor());
+        }
+
+        /**
+         * 被调用的 future 完成时，或者超时检测的定时任务触发时调用
+         */
+        @Override
+        public void run() {
+            ListenableFuture<T> future = calling;
+            if (future.isDone()) {
+                if (tryEnd(COMPLETED)) {
+                    // 本次调用先完成的话，超时检测就没用了，直接取消掉
+                    Timeout currentTimeout = timeout;
+                    if (currentTimeout != null) {
+                        currentTimeout.cancel();
+                    }
+                    call.retryPolicy.onAttemptComplete(nanoTime() - startNanos);
+                    try {
+                        T value = getDone(future);
+                        if (hedge) {
+                            call.set(value);
+                        }
+                        finish(value, null);
+                    } catch (ExecutionException e) {
+                        finish(null, e.getCause());
+                    } catch (Throwable t) {
+                        finish(null, t);
+                    }
+                } else if (hedge) {
+                    // hedge模式下，不cancel之前的尝试，之前的调用一旦成功就set到最终结果里
+                    try {
+                        call.set(getDone(future));
+                    } catch (Throwable t) {
+                        // ignore failure of timed out attempt
+                    }
+                }
+                return;
+            }
+            if (hedgeArmed) {
+                hedgeArmed = false;
+                if (state != RUNNING) {
+                    return;
+                }
+                if (call.hasTimeForAttempt(0) && call.retryPolicy.acquireHedge()) {
+                    if (!call.tryAcquireRetry()) {
+                        call.retryPolicy.releaseHedge();
+                    } else if (!STATE_UPDATER.compareAndSet(this, RUNNING, HEDGED)) {
+                        // 本次尝试刚好结束了，由它自己决定是否重试
+                        call.releaseRetry();
+                        call.retryPolicy.releaseHedge();
+                        return;
+                    } else {
+                        // 提前发起下一次尝试，本次尝试继续等待，谁先成功就用谁的结果
+                        call.callbackExecutor.execute(call::start);
+                    }
+                }
+                Timeout hardTimeout = call.timer.schedule(this, timeoutMs - hedgeDelayMs);
+                timeout = hardTimeout;
+                int current = state;
+                if (current != RUNNING && current != HEDGED) {
+                    hardTimeout.cancel();
+                }
+                return;
+            }
+            if (!tryEnd(TIMED_OUT)) {
+                return;
+            }
+            call.retryPolicy.onAttemptComplete(MILLISECONDS.toNanos(timeoutMs));
+            if (triggerGetOnTimeout) {
+                try {
+                    // 这里get一下是为了触发一些 listener，例子参考 ScopeAsyncRetryTest.testTimeoutListenableFuture
+                    // 如果这会儿成功了还是把结果作为本次尝试的结果
+                    finish(future.get(0, NANOSECONDS), null);
+                } catch (Throwable t) {
+                    finish(null, t);
+                }
+            } else {
+                finish(null, new TimeoutException());
+            }
+            if (!hedge) {
+                // 普通模式下，这次重试超时就把这次的future cancel掉；hedge模式下等到最终结果确定下来之后再cancel
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * 从 {@link #RUNNING} 或者 {@link #HEDGED} 结束本次尝试，同时记下是否已经 hedge 过
+         *
+         * @return 是否由当前线程结束
+         */
+        private boolean tryEnd(int target) {
+            while (true) {
+                int current = state;
+                if (current != RUNNING && current != HEDGED) {
+                    return false;
+                }
+                if (STATE_UPDATER.compareAndSet(this, current, target)) {
+                    hedged = current == HEDGED;
+                    return true;
+                }
+            }
+        }
+
+        private void finish(@Nullable T value, @Nullable Throwable throwable) {
+            this.result = value;
+            this.failure = throwable;
+            call.callbackExecutor.execute(this::onFinish);
+        }
+
+        /**
+         * 在 callbackExecutor 中处理本次尝试的结果：先通知 eachRetryCallback，再决定是设置最终结果还是接着重试
+         */
+        private void onFinish() {
+            FutureCallback<T> callback = call.eachRetryCallback;
+            if (callback != null) {
+                try {
+                    if (failure == null) {
+                        callback.onSuccess(result);
+                    } else {
+                        callback.onFailure(failure);
+                    }
+                } catch (Throwable e) {
+                    logger.error("", e);
+                }
+            }
+            if (failure == null) {
+                // 本次尝试如果成功，直接给最终结果set上
+                call.set(result);
+            } else if (retryInterval < 0 || call.retryPolicy.abortRetry(failure)) {
+                // 如果不会再重试了，或者这个异常不需要重试，那就把这次的异常set到最终结果里吧
+                call.setException(failure);
+            } else if (!hedged && !call.isDone()) {
+                // 不管之前是超时还是执行失败了，只要最终结果没拿到，且重试次数还没用完，就会到这里来
+                if (call.hasTimeForAttempt(retryInterval) && call.tryAcquireRetry()) {
+                    call.retry(retryInterval);
+                } else {
+                    // 截止时间前来不及再尝试一次，或者重试预算用完了，不再重试
+                    call.setException(failure);
+                }
+            }
+        }
+
+        void release() {
+            // 先进入终止状态再 cancel，cancel 会同步触发 run()
+            tryEnd(RELEASED);
+            Timeout currentTimeout = timeout;
+            if (currentTimeout != null) {
+                currentTimeout.cancel();
+            }
+            ListenableFuture<T> future = calling;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.github.phantomthief.scope;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * @author w.vela
@@ -40,6 +44,20 @@ public interface RetryPolicy {
         };
     }
 
+    /**
+     * 根据最近的延迟分布提前发起 hedge 的重试策略，每个下游应该持有一个自己的实例
+     * <p>
+     * 一次尝试如果超过最近耗时的 {@code percentile} 分位数还没完成，就发起下一次尝试（不取消本次尝试），
+     * 最多重试 {@code times} 次；hedge 的数量限制在完成的尝试数的 {@code maxHedgeRatio} 以内，
+     * 超出后退化为只在单次调用超时时才重试
+     *
+     * @param percentile 0 ~ 1 之间，比如 0.95
+     * @param maxHedgeRatio 比如 0.05 表示 hedge 最多增加 5% 的请求
+     */
+    static RetryPolicy hedgeAtPercentile(int times, double percentile, double maxHedgeRatio) {
+        return new AdaptiveHedgePolicy(times, percentile, maxHedgeRatio);
+    }
+
     /**
      * @param retryCount 当前重试的次数（1为第一次重试）
      * @return 下次重试的间隔时间，或者返回 {@link #NO_RETRY}
@@ -64,4 +82,57 @@ public interface RetryPolicy {
     default boolean abortRetry(Throwable t) {
         return false;
     }
+
+    /**
+     * hedge 模式下，一次尝试开始多久之后还没完成就发起下一次尝试（不取消本次尝试），单位：ms
+     * <p>
+     * 返回值不小于 {@code singleCallTimeoutMs} 时，只在本次尝试超时时才发起下一次尝试
+     */
+    default long hedgeDelay(long singleCallTimeoutMs) {
+        return singleCallTimeoutMs;
+    }
+
+    /**
+     * 在 {@link #hedgeDelay} 到期、准备提前发起下一次尝试前调用
+     *
+     * @return false 则不提前发起，继续等到本次尝试超时
+     */
+    default boolean acquireHedge() {
+        return true;
+    }
+
+    /**
+     * {@link #acquireHedge} 返回 true 之后，因为重试预算不足或者本次尝试刚好结束而没有发起 hedge 时调用
+     */
+    default void releaseHedge() {
+    }
+
+    /**
+     * 每次尝试完成时调用，超时的尝试按超时时间计算
+     *
+     * @param costNanos 本次尝试的耗时
+     */
+    default void onAttemptComplete(long costNanos) {
+    }
+
+    /**
+     * @return 重试和 hedge 之前需要检查的预算，{@code null} 表示不限制
+     */
+    @Nullable
+    default RetryBudget retryBudget() {
+        return null;
+    }
+
+    /**
+     * 返回一个使用 {@code retryBudget} 限制重试和 hedge 数量的策略，其他行为和当前策略相同
+     * <p>
+     * 预算用完之后，失败或者超时的调用直接返回本次的结果，不再重试
+     *
+     * @throws IllegalStateException 如果当前策略已经有预算了，一个策略只能使用一个预算
+     */
+    default RetryPolicy withBudget(@Nonnull RetryBudget retryBudget) {
+        checkNotNull(retryBudget);
+        checkState(retryBudget() == null, "retry policy already has a budget.");
+        return new BudgetedRetryPolicy(this, retryBudget);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link ScopeAsyncRetry} 用来实现单次调用超时和间隔重试的定时器
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+interface RetryTimer {
+
+    static RetryTimer of(@Nonnull ScheduledExecutorService scheduler) {
+        return new ScheduledExecutorRetryTimer(scheduler);
+    }
+
+    /**
+     * @param task 在定时器线程中执行，不应该有阻塞操作
+     */
+    @Nonnull
+    Timeout schedule(@Nonnull Runnable task, long delayMs);
+
+    interface Timeout {
+
+        /**
+         * 取消还没执行的任务，可以重复调用
+         */
+        void cancel();
+    }
+}
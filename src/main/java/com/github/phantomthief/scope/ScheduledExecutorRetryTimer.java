@@ -0,0 +1,38 @@
+package com.github.phantomthief.scope;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 基于 {@link ScheduledExecutorService} 的 {@link RetryTimer}，兼容之前通过
+ * {@link ScopeAsyncRetry#createScopeAsyncRetry(ScheduledExecutorService, java.util.concurrent.Executor)} 指定调度器的用法
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class ScheduledExecutorRetryTimer implements RetryTimer {
+
+    private final ScheduledExecutorService scheduler;
+
+    ScheduledExecutorRetryTimer(@Nonnull ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Nonnull
+    @Override
+    public Timeout schedule(@Nonnull Runnable task, long delayMs) {
+        ScheduledFuture<?> future = scheduler.schedule(task, delayMs, MILLISECONDS);
+        return () -> {
+            if (future.cancel(false) && scheduler instanceof ScheduledThreadPoolExecutor
+                    && future instanceof Runnable) {
+                // 不依赖调度器的 removeOnCancelPolicy，取消后立即从队列中移除，不用等到原定的执行时间
+                ((ScheduledThreadPoolExecutor) scheduler).remove((Runnable) future);
+            }
+        };
+    }
+}
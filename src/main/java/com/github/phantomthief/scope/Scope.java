@@ -1,8 +1,22 @@
 package com.github.phantomthief.scope;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.function.Supplier;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.whenAllSucceed;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.lang.System.nanoTime;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -10,9 +24,13 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.phantomthief.scope.ScopeKey.AsyncInitializer;
 import com.github.phantomthief.util.ThrowableRunnable;
 import com.github.phantomthief.util.ThrowableSupplier;
 import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * 自定义Scope，支持如下功能：
@@ -20,6 +38,7 @@ import com.google.common.annotations.Beta;
  * <ul>
  *  <li>开启一个自定义的Scope，在Scope范围内，可以通过 {@link Scope} 各个方法读写数据</li>
  *  <li>可以通过 {@link #supplyWithExistScope} 或者 {@link #runWithExistScope} 绑定已经存在的scope</li>
+ *  <li>可以通过 {@link #supplyWithChildScope} 或者 {@link #runWithChildScope} 在已有的scope中开始一个子scope</li>
  * </ul>
  *
  * 举个栗子：
@@ -37,16 +56,14 @@ import com.google.common.annotations.Beta;
  * });
  * }</pre>
  *
- * TODO: 当前实现是一种比较简易的方式，直接把所有Scope放到一个ThreadLocal里。
- * 实际上这样在使用过程中会有二次hash查询的问题，对性能会有些许的影响，更好的做法是：
- * 直接使用ThreadLocal（也就是使用内部的ThreadLocalMap），同时在Scope拷贝和清理时，维护一个额外的Set，进行ThreadLocal拷贝。
+ * 实现说明：每个 {@link ScopeKey} 在创建时会分配一个连续的下标，{@link Scope} 内部用一个按下标寻址的数组保存数据，
+ * 读取时只需要一次 ThreadLocal 查询加一次数组访问，不再需要额外的 hash 查询。
+ * 数组的线程安全方式可以在 {@link Scope} 开始时通过 {@link ScopeStorageType} 选择。
  * <p/>
- * 这样的优化考虑是：Scope正常访问的频率很高，而线程切换拷贝的概率比较低。
- * 目前这个实现参考了 GRPC 的 Context API 以及 Spring 的 RequestContext，
- * 相对比较简单，目前效率也可以接受。等到需要榨取性能时再对这个实现动手吧。
+ * 这个实现参考了 Netty 的 InternalThreadLocalMap，以及 GRPC 的 Context API 和 Spring 的 RequestContext。
  * <p/>
  * <p>
- * 注意: 本实现并不充当对 ThreadLocal 性能提升的作用（虽然在有 FastThreadLocal 使用条件下并开启开关后，会优先使用 FastThreadLocal 以提升性能）；
+ * 注意: 本实现并不充当对 ThreadLocal 性能提升的作用（虽然在有 FastThreadLocal 使用条件下并开启开关后，会在 FastThreadLocalThread 上优先使用 FastThreadLocal 以提升性能）；
  * </p>
  * <p>
  * 注意: 在Scope提供的传播已有Scope的方法中，没有对Scope做拷贝，如果使用{@link #supplyWithExistScope(Scope, ThrowableSupplier)}, {@link #runWithExistScope(Scope, ThrowableRunnable)}
@@ -62,20 +79,82 @@ public final class Scope {
 
     private static final SubstituteThreadLocal<Scope> SCOPE_THREAD_LOCAL = MyThreadLocalFactory.create();
 
-    private final ConcurrentMap<ScopeKey<?>, Holder<?>> values = new ConcurrentHashMap<>();
+    /**
+     * 截止时间（{@link System#nanoTime()} 的绝对值）也是一个普通的 {@link ScopeKey}，跟着 {@link Scope} 和快照一起传递
+     */
+    private static final ScopeKey<Long> DEADLINE_KEY = ScopeKey.allocate();
+
+    /**
+     * 子 {@link Scope} 最多嵌套的层数，读取没有在子 {@link Scope} 中写过的 {@link ScopeKey} 时最多向上查找这么多层
+     */
+    static final int MAX_CHILD_DEPTH = 16;
+
+    /**
+     * 每个线程最多缓存多少个回收的 {@link Scope}（每种 {@link ScopeStorageType} 分别计算），默认为 0，不回收
+     * <p>
+     * 开启后 {@link #endScope()} 会清空 {@link Scope} 的数据并放回当前线程的池中，下次 {@link #beginScope()} 直接复用，
+     * 稳态下一次请求的 {@link Scope} 生命周期不会分配内存。为了避免还在使用的 {@link Scope} 被复用：
+     * <ul>
+     *  <li>{@link ScopeUtils} 传递 {@link Scope} 的异步任务在执行结束前会持有一个引用，所有引用都释放后才会回收；</li>
+     *  <li>通过 {@link #getCurrentScope()} 拿到过的 {@link Scope} 不会再被回收。</li>
+     * </ul>
+     * 注意开启后 {@link #beginScope()} 返回的 {@link Scope} 在 {@link #endScope()} 之后就不能再使用了。
+     */
+    static final String SCOPE_RECYCLE_POOL_SIZE = "SCOPE_RECYCLE_POOL_SIZE";
+
+    private static int recyclePoolSize = Math.max(0, Integer.getInteger(SCOPE_RECYCLE_POOL_SIZE, 0));
+    private static final ThreadLocal<RecyclePool> RECYCLE_POOL = ThreadLocal.withInitial(RecyclePool::new);
+
+    private static final AtomicIntegerFieldUpdater<Scope> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Scope.class, "refCnt");
+    private static final AtomicIntegerFieldUpdater<Scope> ENDED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Scope.class, "ended");
 
-    private final ConcurrentMap<ScopeKey<?>, Boolean> enableNullProtections = new ConcurrentHashMap<>();
+    private final ScopeStorage storage;
+
+    /**
+     * 子 {@link Scope} 的上层 {@link Scope}，参考 {@link #beginChildScope()}
+     */
+    @Nullable
+    private final Scope parent;
+    private final int depth;
+
+    /**
+     * 只有开启回收后通过 {@link #beginScope} 创建的 {@link Scope} 才有，快照等其它 {@link Scope} 为 {@code null}，不会被回收
+     */
+    @Nullable
+    private final ScopeStorageType storageType;
+
+    /**
+     * 创建者持有一个引用，在 {@link #endScope()} 时释放
+     */
+    private volatile int refCnt = 1;
+    private volatile int ended;
+    private volatile boolean pinned;
+
+    private Scope(ScopeStorage storage) {
+        this(storage, null, null);
+    }
+
+    private Scope(ScopeStorage storage, @Nullable ScopeStorageType storageType, @Nullable Scope parent) {
+        this.storage = storage;
+        this.storageType = storageType;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
 
     @Beta
     public static boolean fastThreadLocalEnabled() {
         try {
-            return SCOPE_THREAD_LOCAL.getRealThreadLocal() instanceof NettyFastThreadLocal;
+            return MyThreadLocalFactory.isFastThreadLocal(SCOPE_THREAD_LOCAL.getRealThreadLocal());
         } catch (Error e) {
             return false;
         }
     }
 
     /**
+     * 只能在第一次使用 {@link Scope} 之前调用，参考 {@link SubstituteThreadLocal}
+     *
      * @return {@code true} if fast thread local was enabled.
      */
     @Beta
@@ -83,13 +162,17 @@ public final class Scope {
         return setFastThreadLocal(true);
     }
 
+    /**
+     * 实现在第一次绑定 {@link Scope} 之后就固定下来，之后的切换会失败并返回 {@code false}
+     */
     static boolean setFastThreadLocal(boolean usingFastThreadLocal) {
-        // no lock need here, for benchmark friendly
-        // unnecessary to copy content of thread local. it's only for switch on initial stage or testing.
         if (usingFastThreadLocal) {
             try {
-                if (!(SCOPE_THREAD_LOCAL.getRealThreadLocal() instanceof NettyFastThreadLocal)) {
-                    SCOPE_THREAD_LOCAL.setRealThreadLocal(new NettyFastThreadLocal<>());
+                if (!MyThreadLocalFactory.isFastThreadLocal(SCOPE_THREAD_LOCAL.getRealThreadLocal())) {
+                    if (!SCOPE_THREAD_LOCAL.setRealThreadLocal(MyThreadLocalFactory.newFastThreadLocal())) {
+                        logger.warn("cannot change scope's implements after first use.");
+                        return false;
+                    }
                     logger.info("change current scope's implements to fast thread local.");
                 }
             } catch (Error e) {
@@ -98,7 +181,10 @@ public final class Scope {
             }
         } else {
             if (!(SCOPE_THREAD_LOCAL.getRealThreadLocal() instanceof JdkThreadLocal)) {
-                SCOPE_THREAD_LOCAL.setRealThreadLocal(new JdkThreadLocal<>());
+                if (!SCOPE_THREAD_LOCAL.setRealThreadLocal(new JdkThreadLocal<>())) {
+                    logger.warn("cannot change scope's implements after first use.");
+                    return false;
+                }
                 logger.info("change current scope's implements to jdk thread local.");
             }
         }
@@ -115,16 +201,33 @@ public final class Scope {
 
     public static <T, X extends Throwable> T supplyWithExistScope(@Nullable Scope scope,
             ThrowableSupplier<T, X> supplier) throws X {
-        Scope oldScope = SCOPE_THREAD_LOCAL.get();
-        SCOPE_THREAD_LOCAL.set(scope);
+        Scope oldScope = bind(scope);
         try {
             return supplier.get();
         } finally {
-            if (oldScope != null) {
-                SCOPE_THREAD_LOCAL.set(oldScope);
-            } else {
-                SCOPE_THREAD_LOCAL.remove();
-            }
+            restore(oldScope);
+        }
+    }
+
+    /**
+     * 绑定 {@code scope}，返回线程原来绑定的 {@link Scope}，之后必须在 finally 中调用 {@link #restore}；
+     * 只用于不想为每次调用创建 lambda 的内部实现，其它情况使用 {@link #supplyWithExistScope}
+     */
+    @Nullable
+    static Scope bind(@Nullable Scope scope) {
+        Scope oldScope = SCOPE_THREAD_LOCAL.get();
+        SCOPE_THREAD_LOCAL.set(scope);
+        return oldScope;
+    }
+
+    /**
+     * @see #bind
+     */
+    static void restore(@Nullable Scope oldScope) {
+        if (oldScope != null) {
+            SCOPE_THREAD_LOCAL.set(oldScope);
+        } else {
+            SCOPE_THREAD_LOCAL.remove();
         }
     }
 
@@ -138,7 +241,20 @@ public final class Scope {
 
     public static <T, X extends Throwable> T
             supplyWithNewScope(@Nonnull ThrowableSupplier<T, X> supplier) throws X {
-        beginScope();
+        return supplyWithNewScope(ScopeStorageFactory.getDefaultType(), supplier);
+    }
+
+    public static <X extends Throwable> void runWithNewScope(@Nonnull ScopeStorageType storageType,
+            @Nonnull ThrowableRunnable<X> runnable) throws X {
+        supplyWithNewScope(storageType, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public static <T, X extends Throwable> T supplyWithNewScope(@Nonnull ScopeStorageType storageType,
+            @Nonnull ThrowableSupplier<T, X> supplier) throws X {
+        beginScope(storageType);
         try {
             return supplier.get();
         } finally {
@@ -159,93 +275,574 @@ public final class Scope {
      */
     @Nonnull
     public static Scope beginScope() {
+        return beginScope(ScopeStorageFactory.getDefaultType());
+    }
+
+    /**
+     * @param storageType 当前 {@link Scope} 的存储方式，参考 {@link ScopeStorageType}
+     * @throws IllegalStateException if try to start a new scope in an exist scope.
+     * @see #beginScope()
+     */
+    @Nonnull
+    public static Scope beginScope(@Nonnull ScopeStorageType storageType) {
         Scope scope = SCOPE_THREAD_LOCAL.get();
         if (scope != null) {
             throw new IllegalStateException("start a scope in an exist scope.");
         }
-        scope = new Scope();
+        scope = newScope(storageType);
+        SCOPE_THREAD_LOCAL.set(scope);
+        return scope;
+    }
+
+    public static <X extends Throwable> void runWithChildScope(@Nonnull ThrowableRunnable<X> runnable)
+            throws X {
+        supplyWithChildScope(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public static <T, X extends Throwable> T
+            supplyWithChildScope(@Nonnull ThrowableSupplier<T, X> supplier) throws X {
+        beginChildScope();
+        try {
+            return supplier.get();
+        } finally {
+            endScope();
+        }
+    }
+
+    /**
+     * 在当前 {@link Scope} 中开始一个子 {@link Scope}，当前线程不在 {@link Scope} 中时和 {@link #beginScope()} 相同
+     * <p>
+     * 子 {@link Scope} 只保存自己写入的数据，没有写过的 {@link ScopeKey} 从上层 {@link Scope} 读取（包括之后上层的修改），
+     * 带 initializer 的 {@link ScopeKey} 也在上层 {@link Scope} 中初始化，和上层共享；
+     * 子 {@link Scope} 中的写入对上层不可见，写入 {@code null} 相当于恢复成上层的值。
+     * 截止时间也是这样，子 {@link Scope} 可以通过 {@link #setDeadlineAfter(Duration)} 设置一个只对自己生效的更早的截止时间。
+     * <p>
+     * 创建子 {@link Scope} 不复制任何数据，只分配一个空的存储，适合嵌套的子请求：
+     * <pre>{@code
+     * runWithChildScope(() -> {
+     *      TEST_KEY.set("child"); // 只在子 Scope 中生效
+     *      String result = PARENT_KEY.get(); // 读取上层的值
+     * });
+     * }</pre>
+     * {@link #endScope()} 结束子 {@link Scope} 后，当前线程回到上层 {@link Scope}。
+     *
+     * @throws IllegalStateException if child scopes are nested deeper than {@link #MAX_CHILD_DEPTH}.
+     */
+    @Nonnull
+    public static Scope beginChildScope() {
+        Scope parent = SCOPE_THREAD_LOCAL.get();
+        if (parent == null) {
+            return beginScope();
+        }
+        if (parent.depth >= MAX_CHILD_DEPTH) {
+            throw new IllegalStateException("child scope is nested too deep.");
+        }
+        Scope scope = new Scope(ScopeStorageFactory.create(), null, parent);
+        // 子 Scope 结束之前上层不能回收
+        parent.retain();
         SCOPE_THREAD_LOCAL.set(scope);
         return scope;
     }
 
+    /**
+     * 开始一个带截止时间的 {@link Scope}，截止时间会随着 {@link Scope} 传递到异步任务和重试中，
+     * 参考 {@link #setDeadlineAfter(Duration)}
+     *
+     * @param timeout 从现在开始，当前请求最多还能花费的时间
+     * @throws IllegalStateException if try to start a new scope in an exist scope.
+     * @see #beginScope()
+     */
+    @Nonnull
+    public static Scope beginScope(@Nonnull Duration timeout) {
+        Scope scope = beginScope();
+        scope.setDeadlineAfter(timeout);
+        return scope;
+    }
+
+    /**
+     * 只应该在启动时（第一次使用 {@link Scope} 之前）调用，主要用于测试，参考 {@link #SCOPE_RECYCLE_POOL_SIZE}
+     */
+    static void setRecyclePoolSize(int poolSize) {
+        recyclePoolSize = Math.max(0, poolSize);
+    }
+
+    private static Scope newScope(ScopeStorageType storageType) {
+        if (recyclePoolSize > 0) {
+            Scope scope = RECYCLE_POOL.get().poll(storageType);
+            if (scope != null) {
+                return scope;
+            }
+            return new Scope(ScopeStorageFactory.create(storageType), storageType, null);
+        }
+        return new Scope(ScopeStorageFactory.create(storageType));
+    }
+
     /**
      * @see #beginScope
      */
     public static void endScope() {
+        Scope scope = SCOPE_THREAD_LOCAL.get();
+        if (scope != null && scope.parent != null) {
+            SCOPE_THREAD_LOCAL.set(scope.parent);
+            scope.parent.release();
+            return;
+        }
+        if (recyclePoolSize > 0) {
+            // 线程反正还持有回收池，这里保留 ThreadLocal 的 entry，下次 beginScope 时不用重新分配
+            SCOPE_THREAD_LOCAL.set(null);
+            if (scope != null && scope.storageType != null && ENDED_UPDATER.compareAndSet(scope, 0, 1)) {
+                scope.release();
+            }
+            return;
+        }
         SCOPE_THREAD_LOCAL.remove();
     }
 
     /**
      * @return 返回当前请求的 {@link Scope}，当请求线程不在 {@link Scope} 绑定状态时，返回 {@code null}
+     * <p>
+     * 开启了 {@link #SCOPE_RECYCLE_POOL_SIZE} 时，通过这个方法拿到的 {@link Scope} 不会再被回收，因为无法知道调用方什么时候不再使用它
      */
     @Nullable
     public static Scope getCurrentScope() {
+        Scope scope = SCOPE_THREAD_LOCAL.get();
+        if (scope != null) {
+            scope.pin();
+        }
+        return scope;
+    }
+
+    /**
+     * 和 {@link #getCurrentScope()} 相同，但是不会阻止回收，只用于不会在 {@link Scope} 结束之后继续持有它的内部调用，
+     * 需要跨线程持有时配合 {@link #retain()} 和 {@link #release()} 使用
+     */
+    @Nullable
+    static Scope currentScope() {
         return SCOPE_THREAD_LOCAL.get();
     }
 
-    public <T> void set(@Nonnull ScopeKey<T> key, T value) {
-        if (value != null) {
-            values.put(key, new Holder<>(value));
-        } else {
-            values.remove(key);
+    /**
+     * 异步任务持有 {@link Scope} 之前调用，保证任务结束之前 {@link Scope} 不会被回收
+     */
+    void retain() {
+        if (parent != null) {
+            parent.retain();
+        } else if (storageType != null) {
+            REF_CNT_UPDATER.incrementAndGet(this);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public <T> T get(@Nonnull ScopeKey<T> key) {
-        Holder<T> holder = (Holder<T>) values.get(key);
-        if (holder == null) {
-            holder = (Holder<T>) values.computeIfAbsent(key, k -> new Holder<T>());
+    /**
+     * 和 {@link #retain()} 配对，最后一个持有者释放时回收到当前线程的池中
+     */
+    void release() {
+        if (parent != null) {
+            parent.release();
+        } else if (storageType != null && REF_CNT_UPDATER.decrementAndGet(this) == 0) {
+            recycle();
         }
+    }
 
-        return holder.getOrCreate(key, enableNullProtections);
+    /**
+     * 子 {@link Scope} 本身不会被回收，引用计数和 pin 都记在最上层的 {@link Scope} 上
+     */
+    private void pin() {
+        if (parent != null) {
+            parent.pin();
+        } else if (storageType != null && !pinned) {
+            pinned = true;
+        }
     }
 
-    private static class Holder<T> {
-        private T value;
+    private void recycle() {
+        if (pinned) {
+            return;
+        }
+        storage.clear();
+        refCnt = 1;
+        ended = 0;
+        RECYCLE_POOL.get().offer(this);
+    }
+
+    /**
+     * 返回当前 {@link Scope} 的一个快照，适合在把 {@link Scope} 传递给其它线程时使用
+     * <p>
+     * 快照包含调用时的所有数据，之后对当前 {@link Scope} 的修改不会影响快照，对快照的修改也不会影响当前 {@link Scope}；
+     * 快照使用 {@link ScopeStorageType#COPY_ON_WRITE} 存储，和当前 {@link Scope} 共享数据直到第一次写入，多个线程读取同一个快照也没有任何竞争。
+     * <p>
+     * 如果当前 {@link Scope} 使用 {@link ScopeStorageType#COPY_ON_WRITE} 存储（包括快照本身），创建快照是 O(1) 的，否则需要复制一次数组。
+     * 子 {@link Scope} 的快照会把上层的数据合并进来，快照本身不再是子 {@link Scope}。
+     */
+    @Nonnull
+    public Scope snapshot() {
+        return new Scope(new CopyOnWriteScopeStorage(snapshotSlots()));
+    }
 
-        public Holder() {
+    private Object[] snapshotSlots() {
+        Object[] local = storage.snapshot();
+        if (parent == null) {
+            return local;
+        }
+        Object[] inherited = parent.snapshotSlots();
+        if (local.length == 0) {
+            return inherited;
         }
+        Object[] merged = Arrays.copyOf(inherited, Math.max(inherited.length, local.length));
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] != null) {
+                merged[i] = local[i];
+            }
+        }
+        return merged;
+    }
 
-        public Holder(T value) {
-            this.value = value;
+    /**
+     * 设置截止时间为从现在开始的 {@code timeout} 之后；如果已经有更早的截止时间，保留原来的，也就是说截止时间只会收紧
+     * <p>
+     * 截止时间之后，{@link ScopeAsyncRetry} 不再发起新的尝试，通过 {@link ScopeUtils} 传递了这个 {@link Scope} 但还没开始执行的任务也会被丢弃。
+     */
+    public void setDeadlineAfter(@Nonnull Duration timeout) {
+        long deadline = nanoTime() + timeout.toNanos();
+        Long exist = get(DEADLINE_KEY);
+        if (exist == null || deadline - exist < 0) {
+            set(DEADLINE_KEY, deadline);
         }
+    }
 
-        public T getOrCreate(ScopeKey<T> key, ConcurrentMap<ScopeKey<?>, Boolean> enableNullProtections) {
-            if (value != null) {
-                return value;
+    /**
+     * @return 距离截止时间还剩多少纳秒，已经过了截止时间时返回 0 或者负数；没有设置截止时间时返回 {@link Long#MAX_VALUE}
+     */
+    public long remainingNanos() {
+        Long deadline = get(DEADLINE_KEY);
+        return deadline == null ? Long.MAX_VALUE : deadline - nanoTime();
+    }
+
+    /**
+     * @return 是否已经过了截止时间，没有设置截止时间时总是返回 {@code false}
+     */
+    public boolean isDeadlineExceeded() {
+        return remainingNanos() <= 0;
+    }
+
+    public <T> void set(@Nonnull ScopeKey<T> key, T value) {
+        storage.set(key.index(), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(@Nonnull ScopeKey<T> key) {
+        Object value = storage.get(key.index());
+        if (value == null) {
+            if (parent != null) {
+                return parent.get(key);
             }
             if (key.initializer() == null) {
-                return key.defaultValue();
+                if (key.asyncInitializer() == null) {
+                    return key.defaultValue();
+                }
+                return getAsyncValue(key, loadAsync(key));
+            }
+            return initialize(key);
+        }
+        if (value instanceof Holder) {
+            return ((Holder<T>) value).getOrCreate(storage, key);
+        }
+        if (value instanceof AsyncSlot) {
+            return getAsyncValue(key, value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * 不阻塞的读取，参考 {@link ScopeKey#getAsync()}
+     */
+    @Nonnull
+    public <T> ListenableFuture<T> getAsync(@Nonnull ScopeKey<T> key) {
+        if (key.asyncInitializer() == null) {
+            return immediateFuture(get(key));
+        }
+        return toFuture(owner(key).loadAsync(key));
+    }
+
+    /**
+     * 开始并行初始化 {@link ScopeKey#withAsyncInitializer} 创建的 {@link ScopeKey}（包括它们的依赖），不等待初始化完成，
+     * 适合在 {@link Scope} 开始时声明这次请求一定会用到的数据：
+     * <pre>{@code
+     * Scope scope = beginScope().prefetch(USER, PERMISSIONS, CONFIG);
+     * }</pre>
+     * 其它 {@link ScopeKey} 会被忽略。
+     *
+     * @return 当前 {@link Scope}
+     */
+    @Nonnull
+    public Scope prefetch(@Nonnull ScopeKey<?>... keys) {
+        for (ScopeKey<?> key : keys) {
+            if (key.asyncInitializer() != null) {
+                owner(key).loadAsync(key);
             }
+        }
+        return this;
+    }
 
-            return create(key, enableNullProtections);
+    /**
+     * @return 子 {@link Scope} 中没有写过的 {@link ScopeKey} 由上层 {@link Scope} 负责读取和初始化
+     */
+    private Scope owner(ScopeKey<?> key) {
+        Scope scope = this;
+        while (scope.parent != null && scope.storage.get(key.index()) == null) {
+            scope = scope.parent;
         }
+        return scope;
+    }
 
-        private synchronized T create(ScopeKey<T> key, ConcurrentMap<ScopeKey<?>, Boolean> enableNullProtections) {
+    /**
+     * @return 正在初始化的 {@link AsyncSlot}，或者已经初始化好的值
+     */
+    private <T> Object loadAsync(ScopeKey<T> key) {
+        while (true) {
+            Object value = storage.get(key.index());
             if (value != null) {
                 return value;
             }
-            final Supplier<T> initializer = key.initializer();
-            if (initializer == null) {
-                return key.defaultValue();
+            AsyncSlot<T> slot = new AsyncSlot<>();
+            if (storage.putIfAbsent(key.index(), slot) == null) {
+                startAsync(key, slot);
+                return slot;
             }
+        }
+    }
 
-            if(enableNullProtections.containsKey(key)){
+    @SuppressWarnings("unchecked")
+    private static <T> ListenableFuture<T> toFuture(Object value) {
+        if (value instanceof AsyncSlot) {
+            return ((AsyncSlot<T>) value).future;
+        }
+        return immediateFuture((T) value);
+    }
+
+    private <T> void startAsync(ScopeKey<T> key, AsyncSlot<T> slot) {
+        AsyncInitializer<T> asyncInitializer = key.asyncInitializer();
+        List<ListenableFuture<?>> dependencies = new ArrayList<>(asyncInitializer.dependencies.length);
+        for (ScopeKey<?> dependency : asyncInitializer.dependencies) {
+            if (dependency.asyncInitializer() != null) {
+                dependencies.add(toFuture(loadAsync(dependency)));
+            }
+        }
+        // 初始化结束之前不能回收
+        retain();
+        // 依赖全部成功之后才在 executor 中执行，没有依赖时直接提交，executor 拒绝时 future 以异常结束
+        slot.future.setFuture(whenAllSucceed(dependencies).call(
+                () -> supplyWithExistScope(this, asyncInitializer.initializer::get), asyncInitializer.executor));
+        slot.future.addListener(() -> {
+            try {
+                T value = getDone(slot.future);
+                if (value != null) {
+                    storage.replace(key.index(), slot, value);
+                }
+            } catch (Throwable e) {
+                // 失败的话清掉，下次读取时重新初始化
+                storage.replace(key.index(), slot, null);
+            } finally {
+                release();
+            }
+        }, directExecutor());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getAsyncValue(ScopeKey<T> key, Object value) {
+        if (!(value instanceof AsyncSlot)) {
+            return (T) value;
+        }
+        AsyncSlot<T> slot = (AsyncSlot<T>) value;
+        try {
+            return getUninterruptibly(slot.future);
+        } catch (ExecutionException e) {
+            // 不等 listener 清理，保证抛出异常之后的读取一定会重新初始化
+            storage.replace(key.index(), slot, null);
+            throwIfUnchecked(e.getCause());
+            throw new UncheckedExecutionException(e.getCause());
+        } catch (CancellationException e) {
+            storage.replace(key.index(), slot, null);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T initialize(ScopeKey<T> key) {
+        Holder<T> holder = new Holder<>();
+        Object exist = storage.putIfAbsent(key.index(), holder);
+        if (exist == null) {
+            return holder.getOrCreate(storage, key);
+        }
+        if (exist instanceof Holder) {
+            return ((Holder<T>) exist).getOrCreate(storage, key);
+        }
+        return (T) exist;
+    }
+
+    /**
+     * 每个线程一个，按 {@link ScopeStorageType} 分别缓存回收的 {@link Scope}
+     */
+    private static final class RecyclePool {
+
+        private final Scope[][] scopes = new Scope[ScopeStorageType.values().length][0];
+        private final int[] sizes = new int[ScopeStorageType.values().length];
+
+        @Nullable
+        Scope poll(ScopeStorageType storageType) {
+            int type = storageType.ordinal();
+            int size = sizes[type];
+            if (size == 0) {
                 return null;
             }
+            size--;
+            Scope scope = scopes[type][size];
+            scopes[type][size] = null;
+            sizes[type] = size;
+            return scope;
+        }
+
+        void offer(Scope scope) {
+            int type = scope.storageType.ordinal();
+            int size = sizes[type];
+            if (size >= recyclePoolSize) {
+                return;
+            }
+            if (size == scopes[type].length) {
+                scopes[type] = Arrays.copyOf(scopes[type], Math.min(recyclePoolSize, Math.max(4, size << 1)));
+            }
+            scopes[type][size] = scope;
+            sizes[type] = size + 1;
+        }
+    }
+
+    /**
+     * 异步初始化的 {@link ScopeKey} 在初始化完成前占用的槽位，成功后替换为真实的值，失败后清空
+     */
+    private static final class AsyncSlot<T> {
+
+        private final SettableFuture<T> future = SettableFuture.create();
+    }
+
+    /**
+     * 只用于带有 initializer 的 {@link ScopeKey}，保证同一个 {@link Scope} 内 initializer 只执行一次；
+     * 初始化成功后槽位会被替换为真实的值，之后的读取不再经过 {@link Holder}
+     * <p>
+     * 通过 {@link #state} 上的 CAS 选出执行 initializer 的线程，不使用 monitor：
+     * 其它线程先让出几次 CPU，还没初始化完就挂到 {@link #waiters} 上 park，初始化结束（成功或者抛异常）后统一唤醒。
+     * initializer 抛异常时状态回到 {@link #NEW}，等待的线程中会有一个重新执行初始化。
+     * 同一个线程在 initializer 中再次读取同一个 {@link ScopeKey} 会抛出 {@link IllegalStateException}。
+     */
+    private static final class Holder<T> {
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private static final int YIELDS = 8;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Holder> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Holder.class, "state");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Holder, Waiter> WAITERS_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Holder.class, Waiter.class, "waiters");
+
+        private volatile int state;
+        private volatile Thread owner;
+        private volatile Waiter waiters;
+        /**
+         * 在 {@link #state} 变成 {@link #DONE} 之前写入，通过 {@link #state} 的 volatile 写发布
+         */
+        private T value;
+
+        T getOrCreate(ScopeStorage storage, ScopeKey<T> key) {
+            while (true) {
+                int current = state;
+                if (current == DONE) {
+                    T v = value;
+                    return v != null || key.enableNullProtection() ? v : key.defaultValue();
+                }
+                if (current == NEW && STATE_UPDATER.compareAndSet(this, NEW, RUNNING)) {
+                    return create(storage, key);
+                }
+                if (owner == Thread.currentThread()) {
+                    throw new IllegalStateException("recursive initialization of scope key:" + key.index());
+                }
+                awaitNotRunning();
+            }
+        }
 
-            final T v = initializer.get();
-            if(v != null){
-                this.value = v;
-                return v;
+        private T create(ScopeStorage storage, ScopeKey<T> key) {
+            owner = Thread.currentThread();
+            final T v;
+            try {
+                v = key.initializer().get();
+            } catch (Throwable e) {
+                owner = null;
+                state = NEW;
+                wakeUpWaiters();
+                throw e;
             }
+            owner = null;
+            value = v;
+            state = DONE;
+            if (v != null) {
+                storage.replace(key.index(), this, v);
+            } else if (!key.enableNullProtection()) {
+                storage.replace(key.index(), this, null);
+            }
+            wakeUpWaiters();
+            return v != null ? v : key.defaultValue();
+        }
 
-            if(key.enableNullProtection()){
-                enableNullProtections.put(key, true);
+        private void awaitNotRunning() {
+            for (int i = 0; i < YIELDS; i++) {
+                if (state != RUNNING) {
+                    return;
+                }
+                Thread.yield();
+            }
+            Waiter waiter = new Waiter(Thread.currentThread());
+            Waiter head;
+            do {
+                head = waiters;
+                waiter.next = head;
+            } while (!WAITERS_UPDATER.compareAndSet(this, head, waiter));
+            boolean interrupted = false;
+            // 入栈之后再检查一次状态，避免错过唤醒；被唤醒后即使又有线程开始初始化也要回到外层重新入栈
+            while (!waiter.released && state == RUNNING) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
+        }
+
+        private void wakeUpWaiters() {
+            Waiter waiter = WAITERS_UPDATER.getAndSet(this, null);
+            while (waiter != null) {
+                Waiter next = waiter.next;
+                waiter.released = true;
+                LockSupport.unpark(waiter.thread);
+                waiter = next;
+            }
+        }
 
-            return key.defaultValue();
+        private static final class Waiter {
+
+            private final Thread thread;
+            private Waiter next;
+            private volatile boolean released;
+
+            Waiter(Thread thread) {
+                this.thread = thread;
+            }
         }
     }
 }
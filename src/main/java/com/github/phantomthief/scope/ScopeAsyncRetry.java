@@ -1,26 +1,15 @@
 package com.github.phantomthief.scope;
 
 import static com.github.phantomthief.scope.Scope.getCurrentScope;
-import static com.github.phantomthief.scope.Scope.supplyWithExistScope;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
-import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.Thread.MAX_PRIORITY;
 import static java.util.concurrent.Executors.newFixedThreadPool;
-import static java.util.concurrent.Executors.newScheduledThreadPool;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
@@ -29,8 +18,6 @@ import javax.annotation.Nullable;
 import com.github.phantomthief.util.ThrowableSupplier;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningScheduledExecutorService;
-import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
@@ -72,7 +59,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  */
 public class ScopeAsyncRetry {
 
-    private final ListeningScheduledExecutorService scheduler;
+    private final RetryTimer timer;
     private final Executor callbackExecutor;
 
     /**
@@ -91,10 +78,19 @@ public class ScopeAsyncRetry {
     }
 
     /**
-     * 共享的 ScopeAsyncRetry 实例
+     * 使用内置的分片时间轮来检测超时和实现间隔重试，提交和取消定时任务都是无锁的 O(1) 操作，
+     * 不会像 ScheduledExecutorService 那样在重试量大的时候成为瓶颈
      * <p>
-     * 建议不同业务使用不同的实例，因为其中通过 ScheduledExecutorService 来检测超时 和 实现间隔重试
-     * 大量使用共享实例，这里可能成为瓶颈
+     * 时间轮的精度为 1ms，分片数量和 CPU 核数相同，所有通过这个方法创建的实例共用同一个时间轮
+     */
+    public static ScopeAsyncRetry createScopeAsyncRetryWithWheelTimer(Executor callbackExecutor) {
+        return new ScopeAsyncRetry(WheelTimerHolder.TIMER, callbackExecutor);
+    }
+
+    /**
+     * 共享的 ScopeAsyncRetry 实例，使用内置的分片时间轮
+     *
+     * @see #createScopeAsyncRetryWithWheelTimer(Executor)
      */
     public static ScopeAsyncRetry shared() {
         return LazyHolder.INSTANCE;
@@ -106,82 +102,12 @@ public class ScopeAsyncRetry {
     }
 
     ScopeAsyncRetry(ScheduledExecutorService scheduler, Executor callbackExecutor) {
-        this.scheduler = listeningDecorator(scheduler);
-        this.callbackExecutor = callbackExecutor;
-    }
-
-    /**
-     * 内部工具方法，将future结果代理到另一个SettableFuture上
-     */
-    private static <T> FutureCallback<T> setAllResultToOtherSettableFuture(SettableFuture<T> target) {
-        return new FutureCallback<T>() {
-
-            @Override
-            public void onSuccess(@Nullable T result) {
-                target.set(result);
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                target.setException(t);
-            }
-        };
-    }
-
-    private static <T> FutureCallback<T> cancelOtherFuture(Future<T> target,
-            boolean mayInterruptIfRunning) {
-        return new FutureCallback<T>() {
-
-            @Override
-            public void onSuccess(@Nullable T result) {
-                target.cancel(mayInterruptIfRunning);
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                target.cancel(mayInterruptIfRunning);
-            }
-        };
-    }
-
-    private static <T> FutureCallback<T> setSuccessResultToOtherSettableFuture(SettableFuture<T> target) {
-        return new FutureCallback<T>() {
-
-            @Override
-            public void onSuccess(@Nullable T result) {
-                target.set(result);
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-            }
-        };
-    }
-
-    private static <T> void addCallbackWithDirectExecutor(ListenableFuture<T> future,
-            FutureCallback<? super T> callback) {
-        addCallback(future, callback, directExecutor());
-    }
-
-    private <T> void addCallbackWithCallbackExecutor(ListenableFuture<T> future,
-            FutureCallback<? super T> callback) {
-        addCallback(future, callback, callbackExecutor);
+        this(RetryTimer.of(scheduler), callbackExecutor);
     }
 
-    private static class RetryConfig {
-
-        private final long retryInterval;
-        private final boolean hedge;
-        private final boolean triggerGetOnTimeout;
-        private final Predicate<Throwable> abortRetry;
-
-        private RetryConfig(long retryInterval, boolean hedge, boolean triggerGetOnTimeout,
-                Predicate<Throwable> abortRetry) {
-            this.retryInterval = retryInterval;
-            this.hedge = hedge;
-            this.triggerGetOnTimeout = triggerGetOnTimeout;
-            this.abortRetry = abortRetry;
-        }
+    private ScopeAsyncRetry(RetryTimer timer, Executor callbackExecutor) {
+        this.timer = timer;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -205,165 +131,26 @@ public class ScopeAsyncRetry {
         checkNotNull(func);
         checkArgument(singleCallTimeoutMs > 0);
 
-        // 用来保存最终的结果
-        SettableFuture<T> resultFuture = SettableFuture.create();
-
-        AtomicInteger retryTime = new AtomicInteger(0);
-        Supplier<RetryConfig> retryConfigSupplier = () -> new RetryConfig(
-                retryPolicy.retry(retryTime.incrementAndGet()), retryPolicy.hedge(), retryPolicy.triggerGetOnTimeout(),
-                retryPolicy::abortRetry);
-
-        Scope scope = getCurrentScope();
-        ThrowableSupplier<ListenableFuture<T>, X> scopeWrappedFunc = () -> supplyWithExistScope(
-                scope, func);
-
-        return callWithRetry(scopeWrappedFunc, singleCallTimeoutMs, retryConfigSupplier,
-                resultFuture, eachRetryCallback);
+        RetryCall<T, X> call = new RetryCall<>(timer, callbackExecutor, func, getCurrentScope(),
+                singleCallTimeoutMs, retryPolicy, eachRetryCallback);
+        call.start();
+        return call;
     }
 
-    /**
-     * 内部递归方法，返回值是最终的挂了多个retry callback的future
-     */
-    private <T, X extends Throwable> SettableFuture<T> callWithRetry(
-            @Nonnull ThrowableSupplier<ListenableFuture<T>, X> func, long singleCallTimeoutMs,
-            Supplier<RetryConfig> retryConfigSupplier, SettableFuture<T> resultFuture,
-            FutureCallback<T> eachRetryCallback) {
-
-        // 如果外部主动 cancel 了，那就不用再做后边没完成的 retry 了
-        if (resultFuture.isDone()) {
-            return resultFuture;
-        }
-
-        RetryConfig retryConfig = retryConfigSupplier.get();
-
-        // 开始当前一次调用尝试
-        final SettableFuture<T> currentTry = SettableFuture.create();
-        if (eachRetryCallback != null) {
-            addCallback(currentTry, eachRetryCallback, callbackExecutor);
-        }
-        AtomicBoolean currentTrySetted = new AtomicBoolean(false);
-        RefHolder<ListenableFuture<T>> callingFuture = new RefHolder<>();
-        try {
-            callingFuture.set(func.get());
-            addCallbackWithDirectExecutor(callingFuture.get(),
-                    new FutureCallback<T>() {
-                        @Override
-                        public void onSuccess(@Nullable T result) {
-                            if (currentTrySetted.compareAndSet(false, true)) {
-                                currentTry.set(result);
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Throwable t) {
-                            if (currentTrySetted.compareAndSet(false, true)) {
-                                currentTry.setException(t);
-                            }
-                        }
-                    });
-        } catch (Throwable t) {
-            currentTry.setException(t);
-        }
-        if (callingFuture.get() != null) {
-            // 看是先超时还是先执行完成或者执行抛异常
-            scheduler.schedule(() -> {
-                if (retryConfig.triggerGetOnTimeout) {
-                    if (currentTrySetted.compareAndSet(false, true)) {
-                        try {
-                            // 这里get一下是为了触发一些 listener，例子参考 ScopeAsyncRetryTest.testTimeoutListenableFuture
-                            T result = callingFuture.get().get(0, NANOSECONDS);
-                            // 如果这会儿成功了还是把结果 set 给 currentTry
-                            currentTry.set(result);
-                        } catch (Throwable t) {
-                            currentTry.setException(t);
-                        }
-                    }
-                } else {
-                    currentTry.setException(new TimeoutException());
-                }
-                if (!retryConfig.hedge) {
-                    // 普通模式下，这次重试超时就把这次的future cancel掉
-                    callingFuture.get().cancel(false);
-                } else {
-                    // hedge模式下，这次重试等到最终结果确定下来之后再cancel
-                    addCallbackWithDirectExecutor(resultFuture,
-                            cancelOtherFuture(callingFuture.get(), false));
-                }
-            }, singleCallTimeoutMs, MILLISECONDS);
-        }
+    private static final class WheelTimerHolder {
 
-        if (retryConfig.hedge && callingFuture.get() != null) {
-            // hedge模式下，不cancel之前的尝试，之前的调用一旦成功就set到最终结果里
-            addCallbackWithDirectExecutor(callingFuture.get(),
-                    setSuccessResultToOtherSettableFuture(resultFuture));
-        }
-
-        if (retryConfig.retryInterval < 0) {
-            // 如果不会再重试了，那就不管什么结果都set到最终结果里吧
-            addCallbackWithCallbackExecutor(currentTry,
-                    setAllResultToOtherSettableFuture(resultFuture));
-        } else {
-            // 本次尝试如果成功，直接给最终结果set上；超时或者异常的话，后边的重试操作都挂在catching里
-            addCallbackWithCallbackExecutor(currentTry,
-                    setSuccessResultToOtherSettableFuture(resultFuture));
-        }
-
-        // hedge模式下，resultFuture可能被之前的调用成功set值，所里这里不仅检查是否需要重试，也检查下是否已经取到了最终结果
-        if (!resultFuture.isDone() && retryConfig.retryInterval >= 0) {
-            // 没拿到最终结果，且重试次数还没用完，那我们接着加重试callback
-            addCallbackWithCallbackExecutor(currentTry, new FutureCallback<T>() {
-
-                @Override
-                public void onSuccess(@Nullable T result) {
-                    // 只有失败了才需要再进行重试，所以这里就啥也不干了
-                }
-
-                @Override
-                public void onFailure(Throwable t) {
-                    // 判定这个异常是否需要重试
-                    if (retryConfig.abortRetry.test(t)) {
-                        resultFuture.setException(t);
-                    } else {
-                        // 不管之前是超时还是执行失败了，只要最终结果没拿到，且重试次数还没用完，就会到这里来
-                        if (retryConfig.retryInterval > 0) {
-                            // 延迟一会儿再重试
-                            scheduler.schedule(() -> {
-                                callWithRetry(func, singleCallTimeoutMs, retryConfigSupplier,
-                                        resultFuture, eachRetryCallback);
-                            }, retryConfig.retryInterval, MILLISECONDS);
-                        } else {
-                            // 直接重试
-                            callWithRetry(func, singleCallTimeoutMs, retryConfigSupplier, resultFuture,
-                                    eachRetryCallback);
-                        }
-                    }
-                }
-            });
-        }
-
-        return resultFuture;
-    }
-
-    private static class RefHolder<R> {
-        private R r;
-
-        public void set(R ref) {
-            this.r = ref;
-        }
-
-        public R get() {
-            return r;
-        }
+        private static final ShardedWheelTimer TIMER = new ShardedWheelTimer(
+                Runtime.getRuntime().availableProcessors(), 1,
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setPriority(MAX_PRIORITY)
+                        .setNameFormat("default-retrier-%d")
+                        .build());
     }
 
     private static final class LazyHolder {
 
-        private static final ScopeAsyncRetry INSTANCE = createScopeAsyncRetry(
-                newScheduledThreadPool(Runtime.getRuntime().availableProcessors(),
-                        new ThreadFactoryBuilder()
-                                .setPriority(MAX_PRIORITY)
-                                .setNameFormat("default-retrier-%d")
-                                .build()),
+        private static final ScopeAsyncRetry INSTANCE = createScopeAsyncRetryWithWheelTimer(
                 newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2,
                         new ThreadFactoryBuilder()
                                 .setPriority(MAX_PRIORITY)
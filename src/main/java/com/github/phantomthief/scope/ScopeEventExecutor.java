@@ -0,0 +1,183 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.ScopeExecutorService.abandon;
+import static com.github.phantomthief.scope.ScopeExecutorService.wrap;
+import static com.github.phantomthief.scope.ScopeExecutorService.wrapPeriodic;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.netty.util.concurrent.AbstractEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ProgressivePromise;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * {@link ScopeNettyUtils#wrap(EventExecutor)} 的实现，和 {@link ScopeExecutorService} 一样在提交任务时捕获 {@link Scope}
+ * <p>
+ * {@link #newPromise()} 等方法直接交给被包装的 {@link EventExecutor}，promise 的 listener 需要通过
+ * {@link ScopeNettyUtils#wrap(io.netty.util.concurrent.GenericFutureListener)} 绑定 {@link Scope}。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopeEventExecutor extends AbstractEventExecutor {
+
+    private final EventExecutor delegate;
+
+    ScopeEventExecutor(@Nullable EventExecutorGroup parent, EventExecutor delegate) {
+        super(parent);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        return delegate.inEventLoop(thread);
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command) {
+        Runnable wrapped = wrap(command);
+        try {
+            delegate.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped, result);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        Callable<T> wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Runnable wrapped = wrap(command);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Callable<V> wrapped = wrap(callable);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+            TimeUnit unit) {
+        return delegate.scheduleAtFixedRate(wrapPeriodic(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        return delegate.scheduleWithFixedDelay(wrapPeriodic(command), initialDelay, delay, unit);
+    }
+
+    @Override
+    public <V> Promise<V> newPromise() {
+        return delegate.newPromise();
+    }
+
+    @Override
+    public <V> ProgressivePromise<V> newProgressivePromise() {
+        return delegate.newProgressivePromise();
+    }
+
+    @Override
+    public <V> Future<V> newSucceededFuture(V result) {
+        return delegate.newSucceededFuture(result);
+    }
+
+    @Override
+    public <V> Future<V> newFailedFuture(Throwable cause) {
+        return delegate.newFailedFuture(cause);
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return delegate.isShuttingDown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        return delegate.shutdownGracefully(quietPeriod, timeout, unit);
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return delegate.terminationFuture();
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "ScopeEventExecutor{" + delegate + "}";
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.phantomthief.scope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.netty.util.concurrent.AbstractEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+
+/**
+ * {@link ScopeNettyUtils#wrap(EventExecutorGroup)} 的实现
+ * <p>
+ * 提交任务的方法都通过 {@link #next()} 交给 {@link ScopeEventExecutor}；
+ * 每个 {@link EventExecutor} 的包装在创建时就准备好，{@link #next()} 不需要分配内存。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopeEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private final EventExecutorGroup delegate;
+    private final Map<EventExecutor, ScopeEventExecutor> children = new IdentityHashMap<>();
+    private final List<EventExecutor> childList;
+
+    ScopeEventExecutorGroup(EventExecutorGroup delegate) {
+        this.delegate = delegate;
+        List<EventExecutor> list = new ArrayList<>();
+        for (EventExecutor executor : delegate) {
+            ScopeEventExecutor child = new ScopeEventExecutor(this, executor);
+            children.put(executor, child);
+            list.add(child);
+        }
+        this.childList = Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public EventExecutor next() {
+        EventExecutor executor = delegate.next();
+        ScopeEventExecutor child = children.get(executor);
+        return child != null ? child : new ScopeEventExecutor(this, executor);
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return childList.iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return delegate.isShuttingDown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        return delegate.shutdownGracefully(quietPeriod, timeout, unit);
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return delegate.terminationFuture();
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "ScopeEventExecutorGroup{" + delegate + "}";
+    }
+}
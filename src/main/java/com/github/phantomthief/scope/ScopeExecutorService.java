@@ -0,0 +1,222 @@
+package com.github.phantomthief.scope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link ScopeUtils#wrap(ExecutorService)} 的实现，提交任务时捕获当前 {@link Scope}，任务执行时绑定
+ * <p>
+ * 提交任务时不在 {@link Scope} 中的话，任务原样提交给被包装的 {@link ExecutorService}，没有任何额外开销。
+ * <p>
+ * 被拒绝的任务、{@link #invokeAny} 取消掉的任务和 {@link #shutdownNow()} 取出的任务会释放持有的 {@link Scope} 引用，
+ * {@link #shutdownNow()} 返回的任务再执行时会抛出 {@link java.util.concurrent.CancellationException}。
+ * 被包装在 {@link Future} 里取出或者取消的任务拿不到包装，引用不会释放，{@link Scope} 只是不再回到池中，之后由 GC 回收。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+class ScopeExecutorService<E extends ExecutorService> implements ExecutorService {
+
+    final E delegate;
+
+    ScopeExecutorService(E delegate) {
+        this.delegate = delegate;
+    }
+
+    static Runnable wrap(Runnable task) {
+        Scope scope = Scope.currentScope();
+        return scope == null ? task : new ScopedRunnable(scope, task);
+    }
+
+    static <T> Callable<T> wrap(Callable<T> task) {
+        Scope scope = Scope.currentScope();
+        return scope == null ? task : new ScopedCallable<>(scope, task);
+    }
+
+    /**
+     * 同一批任务只读取一次当前 {@link Scope}
+     */
+    static <T> Collection<? extends Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+        Scope scope = Scope.currentScope();
+        if (scope == null) {
+            return tasks;
+        }
+        List<Callable<T>> result = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            result.add(new ScopedCallable<>(scope, task));
+        }
+        return result;
+    }
+
+    /**
+     * 释放 {@link #wrap} 包装的任务持有的引用，用于不会再执行的任务，其它任务直接忽略
+     */
+    static void abandon(Object task) {
+        if (task instanceof ScopedRunnable) {
+            ((ScopedRunnable) task).abandon();
+        } else if (task instanceof ScopedCallable) {
+            ((ScopedCallable<?>) task).abandon();
+        }
+    }
+
+    static void abandonAll(Collection<?> tasks) {
+        for (Object task : tasks) {
+            abandon(task);
+        }
+    }
+
+    /**
+     * 周期执行的任务会一直持有 {@link Scope}，所以通过 {@link Scope#getCurrentScope()} 获取，不再回收它；
+     * 过了截止时间之后执行时抛出 {@link java.util.concurrent.CancellationException}，不会再被调度
+     */
+    static Runnable wrapPeriodic(Runnable task) {
+        Scope scope = Scope.getCurrentScope();
+        return scope == null ? task : new ScopedRunnable(scope, task, true);
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command) {
+        Runnable wrapped = wrap(command);
+        try {
+            delegate.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> Future<T> submit(@Nonnull Callable<T> task) {
+        Callable<T> wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> Future<T> submit(@Nonnull Runnable task, T result) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped, result);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Future<?> submit(@Nonnull Runnable task) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<Future<T>> invokeAll(@Nonnull Collection<? extends Callable<T>> tasks)
+            throws InterruptedException {
+        Collection<? extends Callable<T>> wrapped = wrap(tasks);
+        try {
+            return delegate.invokeAll(wrapped);
+        } finally {
+            // 已经执行过的任务会忽略，没有执行的（被取消、被拒绝或者超时）释放引用
+            if (wrapped != tasks) {
+                abandonAll(wrapped);
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<Future<T>> invokeAll(@Nonnull Collection<? extends Callable<T>> tasks, long timeout,
+            @Nonnull TimeUnit unit) throws InterruptedException {
+        Collection<? extends Callable<T>> wrapped = wrap(tasks);
+        try {
+            return delegate.invokeAll(wrapped, timeout, unit);
+        } finally {
+            if (wrapped != tasks) {
+                abandonAll(wrapped);
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> T invokeAny(@Nonnull Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        Collection<? extends Callable<T>> wrapped = wrap(tasks);
+        try {
+            return delegate.invokeAny(wrapped);
+        } finally {
+            if (wrapped != tasks) {
+                abandonAll(wrapped);
+            }
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(@Nonnull Collection<? extends Callable<T>> tasks, long timeout,
+            @Nonnull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        Collection<? extends Callable<T>> wrapped = wrap(tasks);
+        try {
+            return delegate.invokeAny(wrapped, timeout, unit);
+        } finally {
+            if (wrapped != tasks) {
+                abandonAll(wrapped);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Nonnull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = delegate.shutdownNow();
+        abandonAll(tasks);
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "ScopeExecutorService{" + delegate + "}";
+    }
+}
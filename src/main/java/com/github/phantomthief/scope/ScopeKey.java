@@ -1,10 +1,16 @@
 package com.github.phantomthief.scope;
 
-import static com.github.phantomthief.scope.Scope.getCurrentScope;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * 强类型数据读写的封装
@@ -19,18 +25,39 @@ import javax.annotation.Nonnull;
  */
 public final class ScopeKey<T> {
 
+    /**
+     * 每个 {@link ScopeKey} 创建时分配一个全局唯一且连续的下标，{@link Scope} 直接用它作为数组下标存取数据
+     */
+    private static final AtomicInteger INDEX_GENERATOR = new AtomicInteger();
+
+    private final int index;
     private final T defaultValue;
     private final Supplier<T> initializer;
     private final boolean enableNullProtection;
+    private final AsyncInitializer<T> asyncInitializer;
 
     private ScopeKey(T defaultValue, Supplier<T> initializer) {
         this(defaultValue, initializer, false);
     }
 
     private ScopeKey(T defaultValue, Supplier<T> initializer, boolean enableNullProtection) {
+        this(defaultValue, initializer, enableNullProtection, null);
+    }
+
+    private ScopeKey(T defaultValue, Supplier<T> initializer, boolean enableNullProtection,
+            AsyncInitializer<T> asyncInitializer) {
         this.defaultValue = defaultValue;
         this.initializer = initializer;
         this.enableNullProtection = enableNullProtection;
+        this.asyncInitializer = asyncInitializer;
+        this.index = INDEX_GENERATOR.getAndIncrement();
+    }
+
+    /**
+     * @return 当前已经分配的 {@link ScopeKey} 数量
+     */
+    static int allocatedCount() {
+        return INDEX_GENERATOR.get();
     }
 
     @Nonnull
@@ -115,14 +142,56 @@ public final class ScopeKey<T> {
         return new ScopeKey<>(null, initializer, enableNullProtection);
     }
 
+    /**
+     * 在 {@code executor} 中异步初始化的 {@link ScopeKey}
+     * <p>
+     * 第一次调用 {@link #get()}、{@link #getAsync()} 或者 {@link Scope#prefetch} 时开始初始化，
+     * {@link #get()} 只有在初始化还没完成时才会阻塞。initializer 执行时绑定的是发起初始化的 {@link Scope}。
+     * <p>
+     * {@code dependencies} 中的异步 {@link ScopeKey} 会先并行初始化，全部成功后才执行 initializer，
+     * 所以 initializer 中读取它们不会阻塞；依赖只能是已经创建的 {@link ScopeKey}，因此不会出现循环依赖。
+     * initializer 中不要读取没有声明为依赖的异步 {@link ScopeKey}，否则可能占满 {@code executor} 导致死锁。
+     * <p>
+     * 初始化失败时 {@link #get()} 抛出 initializer 的异常（受检异常包装为 {@link com.google.common.util.concurrent.UncheckedExecutionException}），
+     * 之后的读取会重新初始化。
+     */
+    @Nonnull
+    public static <T> ScopeKey<T> withAsyncInitializer(@Nonnull Executor executor, @Nonnull Supplier<T> initializer,
+            @Nonnull ScopeKey<?>... dependencies) {
+        checkNotNull(executor);
+        checkNotNull(initializer);
+        for (ScopeKey<?> dependency : dependencies) {
+            checkNotNull(dependency);
+        }
+        return new ScopeKey<>(null, null, false,
+                new AsyncInitializer<>(executor, initializer, dependencies.clone()));
+    }
+
     public T get() {
-        Scope currentScope = getCurrentScope();
+        Scope currentScope = Scope.currentScope();
         if (currentScope == null) {
             return defaultValue();
         }
         return currentScope.get(this);
     }
 
+    /**
+     * 不阻塞的读取，对于 {@link #withAsyncInitializer} 创建的 {@link ScopeKey}，返回初始化的 future；
+     * 其它情况返回的 future 已经完成，值和 {@link #get()} 相同
+     */
+    @Nonnull
+    public ListenableFuture<T> getAsync() {
+        Scope currentScope = Scope.currentScope();
+        if (currentScope == null) {
+            return immediateFuture(defaultValue());
+        }
+        return currentScope.getAsync(this);
+    }
+
+    int index() {
+        return index;
+    }
+
     Supplier<T> initializer() {
         return initializer;
     }
@@ -135,11 +204,29 @@ public final class ScopeKey<T> {
         return enableNullProtection;
     }
 
+    @Nullable
+    AsyncInitializer<T> asyncInitializer() {
+        return asyncInitializer;
+    }
+
+    static final class AsyncInitializer<T> {
+
+        final Executor executor;
+        final Supplier<T> initializer;
+        final ScopeKey<?>[] dependencies;
+
+        AsyncInitializer(Executor executor, Supplier<T> initializer, ScopeKey<?>[] dependencies) {
+            this.executor = executor;
+            this.initializer = initializer;
+            this.dependencies = dependencies;
+        }
+    }
+
     /**
      * @return {@code true} if in a scope and set success.
      */
     public boolean set(T value) {
-        Scope currentScope = getCurrentScope();
+        Scope currentScope = Scope.currentScope();
         if (currentScope != null) {
             currentScope.set(this, value);
             return true;
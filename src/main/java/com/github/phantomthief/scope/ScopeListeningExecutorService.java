@@ -0,0 +1,59 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * {@link ScopeUtils#wrap(ListeningExecutorService)} 的实现
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+class ScopeListeningExecutorService<E extends ListeningExecutorService> extends ScopeExecutorService<E>
+        implements ListeningExecutorService {
+
+    ScopeListeningExecutorService(E delegate) {
+        super(delegate);
+    }
+
+    @Nonnull
+    @Override
+    public <T> ListenableFuture<T> submit(@Nonnull Callable<T> task) {
+        Callable<T> wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> ListenableFuture<T> submit(@Nonnull Runnable task, T result) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped, result);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ListenableFuture<?> submit(@Nonnull Runnable task) {
+        Runnable wrapped = wrap(task);
+        try {
+            return delegate.submit(wrapped);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableScheduledFuture;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+
+/**
+ * {@link ScopeUtils#wrap(ListeningScheduledExecutorService)} 的实现，和 {@link ScopeScheduledExecutorService} 相同
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopeListeningScheduledExecutorService
+        extends ScopeListeningExecutorService<ListeningScheduledExecutorService>
+        implements ListeningScheduledExecutorService {
+
+    ScopeListeningScheduledExecutorService(ListeningScheduledExecutorService delegate) {
+        super(delegate);
+    }
+
+    @Nonnull
+    @Override
+    public ListenableScheduledFuture<?> schedule(@Nonnull Runnable command, long delay, @Nonnull TimeUnit unit) {
+        Runnable wrapped = wrap(command);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <V> ListenableScheduledFuture<V> schedule(@Nonnull Callable<V> callable, long delay,
+            @Nonnull TimeUnit unit) {
+        Callable<V> wrapped = wrap(callable);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ListenableScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable command, long initialDelay,
+            long period, @Nonnull TimeUnit unit) {
+        return delegate.scheduleAtFixedRate(wrapPeriodic(command), initialDelay, period, unit);
+    }
+
+    @Nonnull
+    @Override
+    public ListenableScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable command, long initialDelay,
+            long delay, @Nonnull TimeUnit unit) {
+        return delegate.scheduleWithFixedDelay(wrapPeriodic(command), initialDelay, delay, unit);
+    }
+}
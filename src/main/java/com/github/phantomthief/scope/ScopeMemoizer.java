@@ -0,0 +1,171 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * 按参数缓存函数结果的 {@link ScopeKey}，缓存只在当前 {@link Scope} 内有效
+ * <p>
+ * {@link ScopeKey#withInitializer} 每个 {@link Scope} 只能缓存一个值，这里按参数缓存多个值，
+ * 适合一次请求中用不同参数多次调用的查询（用户、权限、配置等）：
+ * <pre>{@code
+ *
+ * class MyClass {
+ *
+ *   private static final ScopeMemoizer&lt;Long, User&gt; USER = ScopeMemoizer.memoize(MyClass::getUser);
+ *   private static final ScopeMemoizer&lt;Long, ListenableFuture&lt;User&gt;&gt; ASYNC_USER =
+ *           ScopeMemoizer.memoizeAsync(MyClass::asyncGetUser);
+ *
+ *   void foo() {
+ *     User user = USER.get(1L); // 同一个 Scope 内再次调用直接返回缓存的结果
+ *   }
+ * }
+ *
+ * }
+ * </pre>
+ * <p>
+ * 缓存本身就是 {@link Scope} 中的一个值，{@link Scope#endScope()} 之后随着 {@link Scope} 整体丢弃，不需要逐个清理；
+ * 不在 {@link Scope} 中时不缓存，每次都直接调用函数。
+ * <p>
+ * 缓存是线程安全的，可以在多个共享同一个 {@link Scope} 的线程中使用。同步版本在并发的第一次调用时可能重复计算，只有一个结果会被缓存；
+ * 异步版本对每个参数只调用一次函数，失败的 future 会从缓存中移除，之后的调用会重新发起；
+ * 返回的 future 是同一个 {@link Scope} 中所有调用方共享的，不要 cancel 它。
+ * <p>
+ * 缓存数量达到上限之后，新的参数不再缓存，已经缓存的值不受影响。
+ * <p>
+ * 每个实例占用一个 {@link ScopeKey} 的下标，所以应该和 {@link ScopeKey} 一样作为常量使用。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+public final class ScopeMemoizer<K, V> {
+
+    private static final int DEFAULT_MAX_SIZE = 1024;
+    private static final Object NULL = new Object();
+
+    private final ScopeKey<ConcurrentHashMap<K, Object>> cacheKey = ScopeKey.withInitializer(ConcurrentHashMap::new);
+    private final Function<K, V> loader;
+    private final int maxSize;
+    private final boolean async;
+
+    private ScopeMemoizer(Function<K, V> loader, int maxSize, boolean async) {
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.async = async;
+    }
+
+    /**
+     * 每个 {@link Scope} 最多缓存 1024 个参数
+     */
+    public static <K, V> ScopeMemoizer<K, V> memoize(@Nonnull Function<K, V> loader) {
+        return memoize(DEFAULT_MAX_SIZE, loader);
+    }
+
+    /**
+     * @param maxSize 每个 {@link Scope} 最多缓存的参数个数
+     */
+    public static <K, V> ScopeMemoizer<K, V> memoize(@Nonnegative int maxSize, @Nonnull Function<K, V> loader) {
+        checkArgument(maxSize >= 0, "maxSize must be non-negative.");
+        return new ScopeMemoizer<>(checkNotNull(loader), maxSize, false);
+    }
+
+    /**
+     * 缓存异步调用的 future，每个 {@link Scope} 最多缓存 1024 个参数
+     */
+    public static <K, V> ScopeMemoizer<K, ListenableFuture<V>>
+            memoizeAsync(@Nonnull Function<K, ListenableFuture<V>> loader) {
+        return memoizeAsync(DEFAULT_MAX_SIZE, loader);
+    }
+
+    /**
+     * @param maxSize 每个 {@link Scope} 最多缓存的参数个数
+     * @see #memoizeAsync(Function)
+     */
+    public static <K, V> ScopeMemoizer<K, ListenableFuture<V>> memoizeAsync(@Nonnegative int maxSize,
+            @Nonnull Function<K, ListenableFuture<V>> loader) {
+        checkArgument(maxSize >= 0, "maxSize must be non-negative.");
+        return new ScopeMemoizer<>(checkNotNull(loader), maxSize, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(@Nonnull K key) {
+        checkNotNull(key);
+        ConcurrentHashMap<K, Object> cache = cacheKey.get();
+        if (cache == null) {
+            return loader.apply(key);
+        }
+        Object value = cache.get(key);
+        if (value != null) {
+            return value == NULL ? null : (V) value;
+        }
+        if (cache.size() >= maxSize) {
+            return loader.apply(key);
+        }
+        if (async) {
+            return (V) loadAsync(cache, key);
+        }
+        V loaded = loader.apply(key);
+        Object exist = cache.putIfAbsent(key, loaded == null ? NULL : loaded);
+        if (exist != null) {
+            return exist == NULL ? null : (V) exist;
+        }
+        return loaded;
+    }
+
+    /**
+     * 先放一个占位的 future 进去，保证每个参数只调用一次函数
+     */
+    @SuppressWarnings("unchecked")
+    private Object loadAsync(ConcurrentHashMap<K, Object> cache, K key) {
+        SettableFuture<Object> placeholder = SettableFuture.create();
+        Object exist = cache.putIfAbsent(key, placeholder);
+        if (exist != null) {
+            return exist;
+        }
+        ListenableFuture<Object> loaded;
+        try {
+            loaded = (ListenableFuture<Object>) loader.apply(key);
+        } catch (Throwable t) {
+            loaded = immediateFailedFuture(t);
+        }
+        if (loaded == null) {
+            loaded = immediateFailedFuture(new NullPointerException("loader returns null future."));
+        }
+        placeholder.setFuture(loaded);
+        placeholder.addListener(() -> {
+            if (!succeeded(placeholder)) {
+                cache.remove(key, placeholder);
+            }
+        }, directExecutor());
+        return placeholder;
+    }
+
+    private static boolean succeeded(ListenableFuture<?> future) {
+        try {
+            getDone(future);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 当前 {@link Scope} 中缓存的参数个数
+     */
+    int cachedSize() {
+        ConcurrentHashMap<K, Object> cache = cacheKey.get();
+        return cache == null ? 0 : cache.size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+/**
+ * 在 Netty 的 {@link EventExecutorGroup} 和 {@link Future} 之间传递 {@link Scope}
+ * <p>
+ * netty 是可选依赖，所以这些方法没有放在 {@link ScopeUtils} 中，只有用到时才需要 classpath 中有 netty-common。
+ * 默认情况下 {@link Scope} 在 event loop 线程上也是通过 JDK 的 {@link ThreadLocal} 绑定的；
+ * 设置了 {@code -DUSE_FAST_THREAD_LOCAL=true} 之后，在 FastThreadLocalThread 上才会通过 FastThreadLocal 绑定，参考 {@link MyThreadLocalFactory}。
+ * <pre>{@code
+ * EventExecutorGroup group = ScopeNettyUtils.wrap(new DefaultEventExecutorGroup(4));
+ *
+ * runWithNewScope(() -> {
+ *      TEST_KEY.set("abc");
+ *      group.next().execute(() -> TEST_KEY.get()); // get "abc"
+ *      promise.addListener(ScopeNettyUtils.wrap(future -> TEST_KEY.get())); // get "abc"
+ * });
+ * }</pre>
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+public final class ScopeNettyUtils {
+
+    private ScopeNettyUtils() {
+    }
+
+    /**
+     * 包装 {@code group}，之后通过它（包括 {@link EventExecutorGroup#next()} 返回的 {@link EventExecutor}）提交的任务
+     * 都会在提交时的 {@link Scope} 中执行，行为和 {@link ScopeUtils#wrap(java.util.concurrent.ScheduledExecutorService)} 相同
+     */
+    @Nonnull
+    public static EventExecutorGroup wrap(@Nonnull EventExecutorGroup group) {
+        checkNotNull(group);
+        if (group instanceof EventExecutor) {
+            return wrap((EventExecutor) group);
+        }
+        if (group instanceof ScopeEventExecutorGroup) {
+            return group;
+        }
+        return new ScopeEventExecutorGroup(group);
+    }
+
+    /**
+     * @see #wrap(EventExecutorGroup)
+     */
+    @Nonnull
+    public static EventExecutor wrap(@Nonnull EventExecutor executor) {
+        checkNotNull(executor);
+        if (executor instanceof ScopeEventExecutor) {
+            return executor;
+        }
+        return new ScopeEventExecutor(executor.parent(), executor);
+    }
+
+    /**
+     * listener 执行时绑定当前 {@link Scope}，相当于 Netty 版本的 {@link ScopeUtils#wrapWithScope}；
+     * 不在 {@link Scope} 中时原样返回
+     * <p>
+     * listener 可能在 {@link Scope} 结束之后执行，也可能被添加到多个 future 上，所以当前 {@link Scope} 之后不会再被回收，
+     * 参考 {@link Scope#SCOPE_RECYCLE_POOL_SIZE}
+     */
+    @Nonnull
+    public static <F extends Future<?>> GenericFutureListener<F> wrap(@Nonnull GenericFutureListener<F> listener) {
+        checkNotNull(listener);
+        Scope scope = Scope.getCurrentScope();
+        return scope == null ? listener : new ScopedFutureListener<>(scope, listener);
+    }
+}
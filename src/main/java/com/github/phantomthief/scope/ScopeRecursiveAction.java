@@ -0,0 +1,39 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+
+/**
+ * 在创建时的 {@link Scope} 中执行的 {@link RecursiveAction}，参考 {@link ScopeRecursiveTask}
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+public abstract class ScopeRecursiveAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    @Nullable
+    private final transient Scope scope;
+
+    protected ScopeRecursiveAction() {
+        scope = Scope.getCurrentScope();
+    }
+
+    protected abstract void computeWithScope();
+
+    @Override
+    protected final void compute() {
+        if (scope == null || Scope.currentScope() == scope) {
+            computeWithScope();
+            return;
+        }
+        Scope oldScope = Scope.bind(scope);
+        try {
+            computeWithScope();
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.Nullable;
+
+/**
+ * 在创建时的 {@link Scope} 中执行的 {@link RecursiveTask}
+ * <p>
+ * {@link ForkJoinPool} 中 fork 出去的子任务会被其它线程窃取执行，包装 {@link ForkJoinPool} 本身没法让它们带上 {@link Scope}；
+ * 这里在创建任务时捕获 {@link Scope}，而子任务通常是在父任务的 {@link #computeWithScope()} 中创建的，
+ * 所以整棵任务树都会绑定发起计算时的 {@link Scope}：
+ * <pre>{@code
+ * class SumTask extends ScopeRecursiveTask<Long> {
+ *
+ *   protected Long computeWithScope() {
+ *     if (small enough) {
+ *       return compute directly; // 可以读取 ScopeKey
+ *     }
+ *     SumTask left = new SumTask(...);
+ *     SumTask right = new SumTask(...);
+ *     invokeAll(left, right);
+ *     return left.join() + right.join();
+ *   }
+ * }
+ * }</pre>
+ * 任务可能创建了却从不执行，也可能在 {@link #reinitialize()} 之后再次执行，没有一个确定的时机释放引用，
+ * 所以和周期执行的任务一样通过 {@link Scope#getCurrentScope()} 获取 {@link Scope}，它不会再被回收，
+ * 参考 {@link Scope#SCOPE_RECYCLE_POOL_SIZE}。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ * @see ScopeRecursiveAction
+ */
+public abstract class ScopeRecursiveTask<V> extends RecursiveTask<V> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Nullable
+    private final transient Scope scope;
+
+    protected ScopeRecursiveTask() {
+        scope = Scope.getCurrentScope();
+    }
+
+    protected abstract V computeWithScope();
+
+    @Override
+    protected final V compute() {
+        if (scope == null || Scope.currentScope() == scope) {
+            return computeWithScope();
+        }
+        Scope oldScope = Scope.bind(scope);
+        try {
+            return computeWithScope();
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link ScopeUtils#wrap(ScheduledExecutorService)} 的实现
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopeScheduledExecutorService extends ScopeExecutorService<ScheduledExecutorService>
+        implements ScheduledExecutorService {
+
+    ScopeScheduledExecutorService(ScheduledExecutorService delegate) {
+        super(delegate);
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> schedule(@Nonnull Runnable command, long delay, @Nonnull TimeUnit unit) {
+        Runnable wrapped = wrap(command);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <V> ScheduledFuture<V> schedule(@Nonnull Callable<V> callable, long delay, @Nonnull TimeUnit unit) {
+        Callable<V> wrapped = wrap(callable);
+        try {
+            return delegate.schedule(wrapped, delay, unit);
+        } catch (RejectedExecutionException e) {
+            abandon(wrapped);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable command, long initialDelay, long period,
+            @Nonnull TimeUnit unit) {
+        return delegate.scheduleAtFixedRate(wrapPeriodic(command), initialDelay, period, unit);
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable command, long initialDelay, long delay,
+            @Nonnull TimeUnit unit) {
+        return delegate.scheduleWithFixedDelay(wrapPeriodic(command), initialDelay, delay, unit);
+    }
+}
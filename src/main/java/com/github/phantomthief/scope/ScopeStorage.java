@@ -0,0 +1,42 @@
+package com.github.phantomthief.scope;
+
+/**
+ * {@link Scope} 内部数据的存储实现，按 {@link ScopeKey#index()} 寻址
+ * <p>
+ * 不同实现提供不同的线程安全保证，参考 {@link ScopeStorageType}
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+interface ScopeStorage {
+
+    /**
+     * @return 槽位中的值，没有值时返回 {@code null}
+     */
+    Object get(int index);
+
+    /**
+     * @param value 为 {@code null} 时清除槽位
+     */
+    void set(int index, Object value);
+
+    /**
+     * @return 如果槽位已经有值，返回已有的值，否则写入并返回 {@code null}
+     */
+    Object putIfAbsent(int index, Object value);
+
+    /**
+     * 只有当槽位当前的值是 {@code expect} 时才替换为 {@code update}
+     */
+    void replace(int index, Object expect, Object update);
+
+    /**
+     * @return 当前所有槽位的一个副本，调用方不能修改返回的数组
+     */
+    Object[] snapshot();
+
+    /**
+     * 清空所有槽位，用于回收 {@link Scope}；调用时不能有其它线程在读写
+     */
+    void clear();
+}
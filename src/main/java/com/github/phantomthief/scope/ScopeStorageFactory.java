@@ -0,0 +1,59 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.ScopeStorageType.CONCURRENT;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class ScopeStorageFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScopeStorageFactory.class);
+
+    static final String SCOPE_STORAGE_TYPE = "SCOPE_STORAGE_TYPE";
+
+    private static final ScopeStorageType DEFAULT_TYPE = defaultType();
+
+    private static ScopeStorageType defaultType() {
+        String type = System.getProperty(SCOPE_STORAGE_TYPE);
+        if (type == null) {
+            return CONCURRENT;
+        }
+        try {
+            ScopeStorageType result = ScopeStorageType.valueOf(type);
+            logger.info("using {} as default scope storage.", result);
+            return result;
+        } catch (IllegalArgumentException e) {
+            logger.warn("unknown scope storage type:{}, using {} instead.", type, CONCURRENT);
+            return CONCURRENT;
+        }
+    }
+
+    @Nonnull
+    static ScopeStorageType getDefaultType() {
+        return DEFAULT_TYPE;
+    }
+
+    @Nonnull
+    static ScopeStorage create() {
+        return create(DEFAULT_TYPE);
+    }
+
+    @Nonnull
+    static ScopeStorage create(@Nonnull ScopeStorageType type) {
+        switch (type) {
+            case SINGLE_THREAD:
+                return new SingleThreadScopeStorage();
+            case COPY_ON_WRITE:
+                return new CopyOnWriteScopeStorage();
+            case CONCURRENT:
+            default:
+                return new ConcurrentScopeStorage();
+        }
+    }
+}
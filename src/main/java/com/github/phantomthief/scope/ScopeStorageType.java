@@ -0,0 +1,28 @@
+package com.github.phantomthief.scope;
+
+/**
+ * {@link Scope} 的存储方式，在 {@link Scope} 开始时决定，之后不能改变
+ * <p>
+ * 默认使用 {@link #CONCURRENT}，可以通过系统属性 {@link ScopeStorageFactory#SCOPE_STORAGE_TYPE} 修改默认值，
+ * 或者通过 {@link Scope#beginScope(ScopeStorageType)} 为单个 {@link Scope} 指定。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+public enum ScopeStorageType {
+
+    /**
+     * 支持多线程并发读写，适合通过 {@link ScopeUtils} 等方式在多个线程间共享的 {@link Scope}
+     */
+    CONCURRENT,
+
+    /**
+     * 不做任何同步，只适合从开始到结束都不会被其它线程访问的 {@link Scope}
+     */
+    SINGLE_THREAD,
+
+    /**
+     * 每次写入都会复制整个数组，读取没有任何竞争，适合写入很少、但是会被大量线程并发读取的 {@link Scope}
+     */
+    COPY_ON_WRITE
+}
@@ -2,166 +2,306 @@ package com.github.phantomthief.scope;
 
 import static com.github.phantomthief.scope.Scope.getCurrentScope;
 import static com.github.phantomthief.scope.Scope.runWithExistScope;
-import static com.github.phantomthief.scope.Scope.supplyWithExistScope;
-import static com.github.phantomthief.util.MoreSuppliers.lazy;
-import static java.lang.Boolean.TRUE;
-import static java.lang.System.nanoTime;
-import static java.lang.Thread.MIN_PRIORITY;
-import static java.time.Duration.ofNanos;
-import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
-import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.time.Duration;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.google.common.base.Preconditions;
-import com.google.common.collect.MapMaker;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 
 /**
+ * 传递 {@link Scope} 的异步工具方法
+ * <p>
+ * 如果传递的 {@link Scope} 设置了截止时间（{@link Scope#setDeadlineAfter}），任务开始执行时已经过了截止时间的会被丢弃：
+ * {@link Runnable} 和 {@link Supplier} 都抛出 {@link CancellationException}，返回的 {@link Future} 以这个异常失败，
+ * 周期执行的任务不会再被调度。
+ *
  * @author w.vela
  */
 public final class ScopeUtils {
 
-    private static final Logger logger = LoggerFactory.getLogger(ScopeUtils.class);
-    private static final ConcurrentMap<LongCostTrackImpl, Boolean> MAP = new MapMaker()
-            .weakKeys()
-            .concurrencyLevel(64)
-            .makeMap();
-
-    private static final int CHECK_PERIOD = 1;
+    private ScopeUtils() {
+    }
 
-    private static final Supplier<ScheduledFuture<?>> SCHEDULER = lazy(() ->
-            newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                    .setDaemon(true)
-                    .setNameFormat("long-cost-track")
-                    .setPriority(MIN_PRIORITY)
-                    .build())
-                    .scheduleWithFixedDelay(ScopeUtils::doReport, CHECK_PERIOD, CHECK_PERIOD, SECONDS));
+    public static void runAsyncWithCurrentScope(@Nonnull Runnable runnable,
+            @Nonnull Executor executor) {
+        ScopedRunnable task = new ScopedRunnable(Scope.currentScope(), runnable);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
+    }
 
-    private ScopeUtils() {
+    @Nonnull
+    public static ListenableFuture<?> runAsyncWithCurrentScope(@Nonnull Runnable runnable,
+            @Nonnull ListeningExecutorService executor) {
+        ScopedRunnable task = new ScopedRunnable(Scope.currentScope(), runnable);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
-    private static Runnable wrapRunnableExistScope(@Nullable Scope scope,
-            @Nonnull Runnable runnable) {
-        return () -> runWithExistScope(scope, runnable::run);
+    @Nonnull
+    public static <U> Future<U> supplyAsyncWithCurrentScope(@Nonnull Supplier<U> supplier,
+            @Nonnull ExecutorService executor) {
+        ScopedCallable<U> task = new ScopedCallable<>(Scope.currentScope(), supplier::get);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
-    private static <T> Supplier<T> wrapSupplierExistScope(@Nullable Scope scope,
-            @Nonnull Supplier<T> supplier) {
-        return () -> supplyWithExistScope(scope, supplier::get);
+    @Nonnull
+    public static <U> ListenableFuture<U> supplyAsyncWithCurrentScope(@Nonnull Supplier<U> supplier,
+            @Nonnull ListeningExecutorService executor) {
+        ScopedCallable<U> task = new ScopedCallable<>(Scope.currentScope(), supplier::get);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
-    public static void runAsyncWithCurrentScope(@Nonnull Runnable runnable,
+    /**
+     * 和 {@link #runAsyncWithCurrentScope(Runnable, Executor)} 相同，但是传递的是当前 {@link Scope} 的快照，
+     * 异步任务读取时不会和其它线程竞争，写入也不会影响当前 {@link Scope}，参考 {@link Scope#snapshot()}
+     */
+    public static void runAsyncWithScopeSnapshot(@Nonnull Runnable runnable,
             @Nonnull Executor executor) {
-        executor.execute(wrapRunnableExistScope(getCurrentScope(), runnable));
+        ScopedRunnable task = new ScopedRunnable(currentScopeSnapshot(), runnable);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
+    /**
+     * @see #runAsyncWithScopeSnapshot(Runnable, Executor)
+     */
     @Nonnull
-    public static ListenableFuture<?> runAsyncWithCurrentScope(@Nonnull Runnable runnable,
+    public static ListenableFuture<?> runAsyncWithScopeSnapshot(@Nonnull Runnable runnable,
             @Nonnull ListeningExecutorService executor) {
-        return executor.submit(wrapRunnableExistScope(getCurrentScope(), runnable));
+        ScopedRunnable task = new ScopedRunnable(currentScopeSnapshot(), runnable);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
+    /**
+     * @see #runAsyncWithScopeSnapshot(Runnable, Executor)
+     */
     @Nonnull
-    public static <U> Future<U> supplyAsyncWithCurrentScope(@Nonnull Supplier<U> supplier,
+    public static <U> Future<U> supplyAsyncWithScopeSnapshot(@Nonnull Supplier<U> supplier,
             @Nonnull ExecutorService executor) {
-        return executor.submit(() -> wrapSupplierExistScope(getCurrentScope(), supplier).get());
+        ScopedCallable<U> task = new ScopedCallable<>(currentScopeSnapshot(), supplier::get);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
+    /**
+     * @see #runAsyncWithScopeSnapshot(Runnable, Executor)
+     */
     @Nonnull
-    public static <U> ListenableFuture<U> supplyAsyncWithCurrentScope(@Nonnull Supplier<U> supplier,
+    public static <U> ListenableFuture<U> supplyAsyncWithScopeSnapshot(@Nonnull Supplier<U> supplier,
             @Nonnull ListeningExecutorService executor) {
-        return executor.submit(() -> wrapSupplierExistScope(getCurrentScope(), supplier).get());
+        ScopedCallable<U> task = new ScopedCallable<>(currentScopeSnapshot(), supplier::get);
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
     }
 
     /**
-     * @param onTimeoutReportRunnable accept a time duration in nano-seconds.
+     * 包装 {@code executor}，之后通过它提交的任务（包括 {@link ExecutorService#invokeAll} 和 {@link ExecutorService#invokeAny}）
+     * 都会在提交时的 {@link Scope} 中执行，相当于每次都调用 {@link #runAsyncWithCurrentScope}，
+     * 提交时不在 {@link Scope} 中的任务不做任何包装
+     * <p>
+     * 也可以用于 {@link ForkJoinPool}，但是任务中 fork 出来的子任务需要继承 {@link ScopeRecursiveTask} 或者 {@link ScopeRecursiveAction}
      */
-    public static LongCostTrack trackLongCost(Duration timeoutForReport, Consumer<Duration> onTimeoutReportRunnable) {
-        SCHEDULER.get();
-        Scope scope = getCurrentScope();
-        long nano = nanoTime();
-        LongCostTrackImpl context =
-                new LongCostTrackImpl(onTimeoutReportRunnable, nano, nano + timeoutForReport.toNanos(), scope);
-        MAP.put(context, TRUE);
-        return context;
-    }
-
-    private static void doReport() {
-        Iterator<Entry<LongCostTrackImpl, Boolean>> iterator = MAP.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Entry<LongCostTrackImpl, Boolean> entry = iterator.next();
-            LongCostTrackImpl key = entry.getKey();
-            if (key.closed) {
-                iterator.remove();
-                continue;
-            }
-            long now = nanoTime();
-            long currentCost = now - key.deadline;
-            if (currentCost > 0) {
-                runWithExistScope(key.scope, () -> {
-                    try {
-                        key.runnable.accept(ofNanos(now - key.start));
-                    } catch (Throwable e) {
-                        logger.error("", e);
-                    } finally {
-                        iterator.remove();
-                    }
-                });
-            }
+    @Nonnull
+    public static ExecutorService wrap(@Nonnull ExecutorService executor) {
+        Preconditions.checkNotNull(executor);
+        if (executor instanceof ScopeExecutorService) {
+            return executor;
         }
+        return new ScopeExecutorService<>(executor);
     }
 
-    private static class LongCostTrackImpl implements LongCostTrack {
+    /**
+     * 周期执行的任务每次执行都绑定提交时的 {@link Scope}，这个 {@link Scope} 不会再被回收
+     *
+     * @see #wrap(ExecutorService)
+     */
+    @Nonnull
+    public static ScheduledExecutorService wrap(@Nonnull ScheduledExecutorService executor) {
+        Preconditions.checkNotNull(executor);
+        if (executor instanceof ScopeScheduledExecutorService) {
+            return executor;
+        }
+        return new ScopeScheduledExecutorService(executor);
+    }
 
-        private final Consumer<Duration> runnable;
-        private final long start;
-        private final long deadline;
-        private final Scope scope;
-        private volatile boolean closed;
+    /**
+     * @see #wrap(ExecutorService)
+     */
+    @Nonnull
+    public static ListeningExecutorService wrap(@Nonnull ListeningExecutorService executor) {
+        Preconditions.checkNotNull(executor);
+        if (executor instanceof ScopeListeningExecutorService) {
+            return executor;
+        }
+        return new ScopeListeningExecutorService<>(executor);
+    }
 
-        private LongCostTrackImpl(Consumer<Duration> runnable, long start, long deadline, Scope scope) {
-            this.runnable = runnable;
-            this.start = start;
-            this.deadline = deadline;
-            this.scope = scope;
+    /**
+     * @see #wrap(ScheduledExecutorService)
+     */
+    @Nonnull
+    public static ListeningScheduledExecutorService wrap(@Nonnull ListeningScheduledExecutorService executor) {
+        Preconditions.checkNotNull(executor);
+        if (executor instanceof ScopeListeningScheduledExecutorService) {
+            return executor;
+        }
+        return new ScopeListeningScheduledExecutorService(executor);
+    }
+
+    /**
+     * 让并行流在当前 {@link Scope} 中执行：
+     * <pre>{@code
+     * List&lt;User&gt; users = withCurrentScope(ids.parallelStream())
+     *         .map(id -> getUser(id)) // 在 ForkJoinPool 的线程中也能读取 ScopeKey
+     *         .collect(toList());
+     * }</pre>
+     * 数据源的每个分片在遍历时都会绑定当前 {@link Scope}，覆盖之前和之后的所有中间操作（map、filter 等）以及终止操作的累加；
+     * 不覆盖 {@link Collector} 的 combiner，以及并行流中 sorted 这类有状态操作之后的部分。
+     * 返回的流需要在当前 {@link Scope} 结束之前消费完，不在 {@link Scope} 中时原样返回。
+     */
+    @Nonnull
+    public static <T> Stream<T> withCurrentScope(@Nonnull Stream<T> stream) {
+        Preconditions.checkNotNull(stream);
+        Scope scope = Scope.currentScope();
+        if (scope == null) {
+            return stream;
         }
+        return StreamSupport.stream(new ScopedSpliterator<>(scope, stream.spliterator()), stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * @see #withCurrentScope(Stream)
+     */
+    @Nonnull
+    public static <T> Spliterator<T> withCurrentScope(@Nonnull Spliterator<T> spliterator) {
+        Preconditions.checkNotNull(spliterator);
+        Scope scope = Scope.currentScope();
+        return scope == null ? spliterator : new ScopedSpliterator<>(scope, spliterator);
+    }
 
-        @Override
-        public void close() {
-            closed = true;
-            // 希望业务调用这个，这样可以更早的回收，而不用等到GC阶段
-            MAP.remove(this);
+    /**
+     * 让 {@code stage} 之后所有阶段的回调（包括 *Async 的版本）都在当前 {@link Scope} 中执行，不需要再逐个包装：
+     * <pre>{@code
+     * withCurrentScope(CompletableFuture.supplyAsync(this::load, wrap(executor)))
+     *         .thenApplyAsync(this::transform, executor) // 可以读取 ScopeKey
+     *         .thenCompose(this::save);
+     * }</pre>
+     * 注意这里只包装之后的阶段，{@code stage} 本身的任务需要通过 {@link #wrap(ExecutorService)} 等方式传递 {@link Scope}。
+     * 当前 {@link Scope} 之后不会再被回收；不在 {@link Scope} 中时原样返回。
+     */
+    @Nonnull
+    public static <T> CompletionStage<T> withCurrentScope(@Nonnull CompletionStage<T> stage) {
+        Preconditions.checkNotNull(stage);
+        Scope scope = Scope.getCurrentScope();
+        if (scope == null
+                || stage instanceof ScopedCompletionStage && ((ScopedCompletionStage<T>) stage).scope() == scope) {
+            return stage;
         }
+        return new ScopedCompletionStage<>(scope, stage);
+    }
+
+    @Nullable
+    private static Scope currentScopeSnapshot() {
+        Scope scope = Scope.currentScope();
+        return scope == null ? null : scope.snapshot();
+    }
+
+    /**
+     * 追踪按到期时间放在一个分层时间轮中，检查的开销只和到期的追踪数量有关，{@link LongCostTrack#close()} 也是 O(1) 的；
+     * 检查精度可以通过系统属性 {@link LongCostTracker#LONG_COST_TRACK_TICK_MS} 设置；
+     * 设置系统属性 {@link LongCostTracker#LONG_COST_TRACK_POOL_SIZE} 后追踪对象会被复用，此时 close 之后不能再使用它。
+     * <p>
+     * 注意时间轮强引用着还没有关闭的追踪，连同 {@code onTimeoutReportRunnable} 和当前 {@link Scope} 一起，
+     * 直到 {@link LongCostTrack#close()} 或者超时上报之后才会释放；所以没有关闭就丢弃的追踪也会在超时后上报一次，
+     * 而不会像弱引用那样被 GC 之后悄悄丢掉。{@code timeoutForReport} 很长时，请务必 close。
+     *
+     * @param onTimeoutReportRunnable accept a time duration in nano-seconds.
+     */
+    public static LongCostTrack trackLongCost(Duration timeoutForReport, Consumer<Duration> onTimeoutReportRunnable) {
+        return LongCostTracker.track(timeoutForReport, onTimeoutReportRunnable, getCurrentScope());
     }
 
     /**
      * for {@link Futures#addCallback}
+     * <p>
+     * callback 可能被添加到多个 future 上，所以当前 {@link Scope} 之后不会再被回收，参考 {@link Scope#SCOPE_RECYCLE_POOL_SIZE}
      */
     @Nonnull
     public static <U> FutureCallback<U> wrapWithScope(@Nonnull FutureCallback<U> futureCallback) {
+        Preconditions.checkNotNull(futureCallback);
+        return wrapWithScope(getCurrentScope(), futureCallback);
+    }
 
+    /**
+     * 和 {@link #wrapWithScope(FutureCallback)} 相同，但是 callback 执行时绑定的是当前 {@link Scope} 的快照
+     *
+     * @see Scope#snapshot()
+     */
+    @Nonnull
+    public static <U> FutureCallback<U> wrapWithScopeSnapshot(@Nonnull FutureCallback<U> futureCallback) {
         Preconditions.checkNotNull(futureCallback);
-        Scope currentScope = getCurrentScope();
+        return wrapWithScope(currentScopeSnapshot(), futureCallback);
+    }
+
+    private static <U> FutureCallback<U> wrapWithScope(@Nullable Scope currentScope,
+            @Nonnull FutureCallback<U> futureCallback) {
         return new FutureCallback<U>() {
             @Override
             public void onSuccess(@Nullable U u) {
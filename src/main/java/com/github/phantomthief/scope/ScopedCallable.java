@@ -0,0 +1,74 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * 在创建时的 {@link Scope} 中执行的 {@link Callable}，和 {@link ScopedRunnable} 相同，
+ * 开始执行时已经过了截止时间或者已经调用过 {@link #abandon()} 的任务会抛出 {@link CancellationException}
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopedCallable<V> implements Callable<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ScopedCallable> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ScopedCallable.class, "state");
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    @Nullable
+    private final Scope scope;
+    private final Callable<V> callable;
+    private volatile int state;
+
+    ScopedCallable(@Nullable Scope scope, @Nonnull Callable<V> callable) {
+        this.scope = scope;
+        this.callable = callable;
+        if (scope != null) {
+            scope.retain();
+        }
+    }
+
+    @Override
+    public V call() throws Exception {
+        if (scope != null && !STATE_UPDATER.compareAndSet(this, NEW, RUNNING)) {
+            throw new CancellationException("task abandoned.");
+        }
+        try {
+            if (scope != null && scope.isDeadlineExceeded()) {
+                throw new CancellationException("scope deadline exceeded.");
+            }
+            Scope oldScope = Scope.currentScope();
+            if (oldScope == scope) {
+                return callable.call();
+            }
+            Scope.bind(scope);
+            try {
+                return callable.call();
+            } finally {
+                Scope.restore(oldScope);
+            }
+        } finally {
+            if (scope != null) {
+                scope.release();
+            }
+        }
+    }
+
+    /**
+     * @see ScopedRunnable#abandon()
+     */
+    void abandon() {
+        if (scope != null && state == NEW && STATE_UPDATER.compareAndSet(this, NEW, ABANDONED)) {
+            scope.release();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * 所有后续阶段的回调都在创建时的 {@link Scope} 中执行的 {@link CompletionStage}，
+ * 后续阶段返回的也是 {@link ScopedCompletionStage}，所以整条链只需要包装一次
+ * <p>
+ * 除了 {@link BiFunction} 的回调之外每个阶段只分配一个对象：后续阶段的 {@link ScopedCompletionStage} 本身就是注册到被包装的 {@link CompletionStage} 上的回调，
+ * 执行时绑定 {@link Scope} 再调用 {@link #callback}；如果线程已经绑定了同一个 {@link Scope}（比如在调用方线程上同步完成），不会重复绑定。
+ * <p>
+ * 回调可能在 {@link Scope} 结束之后才执行，所以这里的 {@link Scope} 不会被回收，参考 {@link Scope#SCOPE_RECYCLE_POOL_SIZE}；
+ * {@link #toCompletableFuture()} 返回的是被包装的 {@link CompletableFuture}，在它上面注册的回调不会绑定 {@link Scope}。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ * @see ScopeUtils#withCurrentScope(CompletionStage)
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+final class ScopedCompletionStage<T> implements CompletionStage<T>, Function<Object, Object>, Consumer<Object>,
+        BiConsumer<Object, Object>, Runnable {
+
+    private final Scope scope;
+
+    /**
+     * 产生这个阶段的回调，类型取决于产生这个阶段的方法；最开始包装的阶段为 {@code null}
+     */
+    @Nullable
+    private final Object callback;
+
+    /**
+     * 注册回调之后才能拿到，所以不是 final 的
+     */
+    private volatile CompletionStage<T> delegate;
+
+    ScopedCompletionStage(@Nonnull Scope scope, @Nonnull CompletionStage<T> delegate) {
+        this.scope = scope;
+        this.callback = null;
+        this.delegate = delegate;
+    }
+
+    private ScopedCompletionStage(Scope scope, Object callback) {
+        this.scope = scope;
+        this.callback = callback;
+    }
+
+    Scope scope() {
+        return scope;
+    }
+
+    private <U> ScopedCompletionStage<U> next(Object nextCallback) {
+        return new ScopedCompletionStage<>(scope, nextCallback);
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> thenApply(@Nonnull Function<? super T, ? extends U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenApply((Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> thenApplyAsync(@Nonnull Function<? super T, ? extends U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenApplyAsync((Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> thenApplyAsync(@Nonnull Function<? super T, ? extends U> fn,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenApplyAsync((Function) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenAccept(@Nonnull Consumer<? super T> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAccept((Consumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenAcceptAsync(@Nonnull Consumer<? super T> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAcceptAsync((Consumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenAcceptAsync(@Nonnull Consumer<? super T> action,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAcceptAsync((Consumer) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenRun(@Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenRun((Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenRunAsync(@Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenRunAsync((Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> thenRunAsync(@Nonnull Runnable action, @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenRunAsync((Runnable) next, executor);
+        return next;
+    }
+
+    @Override
+    public <U, V> ScopedCompletionStage<V> thenCombine(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiFunction<? super T, ? super U, ? extends V> fn) {
+        ScopedCompletionStage<V> next = next(fn);
+        next.delegate = delegate.thenCombine(other, (BiFunction) next.asBiFunction());
+        return next;
+    }
+
+    @Override
+    public <U, V> ScopedCompletionStage<V> thenCombineAsync(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiFunction<? super T, ? super U, ? extends V> fn) {
+        ScopedCompletionStage<V> next = next(fn);
+        next.delegate = delegate.thenCombineAsync(other, (BiFunction) next.asBiFunction());
+        return next;
+    }
+
+    @Override
+    public <U, V> ScopedCompletionStage<V> thenCombineAsync(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiFunction<? super T, ? super U, ? extends V> fn, @Nonnull Executor executor) {
+        ScopedCompletionStage<V> next = next(fn);
+        next.delegate = delegate.thenCombineAsync(other, (BiFunction) next.asBiFunction(), executor);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<Void> thenAcceptBoth(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiConsumer<? super T, ? super U> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAcceptBoth(other, (BiConsumer) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<Void> thenAcceptBothAsync(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiConsumer<? super T, ? super U> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAcceptBothAsync(other, (BiConsumer) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<Void> thenAcceptBothAsync(@Nonnull CompletionStage<? extends U> other,
+            @Nonnull BiConsumer<? super T, ? super U> action, @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.thenAcceptBothAsync(other, (BiConsumer) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterBoth(@Nonnull CompletionStage<?> other, @Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterBoth(other, (Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterBothAsync(@Nonnull CompletionStage<?> other, @Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterBothAsync(other, (Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterBothAsync(@Nonnull CompletionStage<?> other, @Nonnull Runnable action,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterBothAsync(other, (Runnable) next, executor);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> applyToEither(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Function<? super T, U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.applyToEither(other, (Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> applyToEitherAsync(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Function<? super T, U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.applyToEitherAsync(other, (Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> applyToEitherAsync(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Function<? super T, U> fn, @Nonnull Executor executor) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.applyToEitherAsync(other, (Function) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> acceptEither(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Consumer<? super T> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.acceptEither(other, (Consumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> acceptEitherAsync(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Consumer<? super T> action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.acceptEitherAsync(other, (Consumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> acceptEitherAsync(@Nonnull CompletionStage<? extends T> other,
+            @Nonnull Consumer<? super T> action, @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.acceptEitherAsync(other, (Consumer) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterEither(@Nonnull CompletionStage<?> other, @Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterEither(other, (Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterEitherAsync(@Nonnull CompletionStage<?> other,
+            @Nonnull Runnable action) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterEitherAsync(other, (Runnable) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<Void> runAfterEitherAsync(@Nonnull CompletionStage<?> other, @Nonnull Runnable action,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<Void> next = next(action);
+        next.delegate = delegate.runAfterEitherAsync(other, (Runnable) next, executor);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> thenCompose(@Nonnull Function<? super T, ? extends CompletionStage<U>> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenCompose((Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U>
+            thenComposeAsync(@Nonnull Function<? super T, ? extends CompletionStage<U>> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenComposeAsync((Function) next);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> thenComposeAsync(@Nonnull Function<? super T, ? extends CompletionStage<U>> fn,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.thenComposeAsync((Function) next, executor);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<T> exceptionally(@Nonnull Function<Throwable, ? extends T> fn) {
+        ScopedCompletionStage<T> next = next(fn);
+        next.delegate = delegate.exceptionally((Function) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<T> whenComplete(@Nonnull BiConsumer<? super T, ? super Throwable> action) {
+        ScopedCompletionStage<T> next = next(action);
+        next.delegate = delegate.whenComplete((BiConsumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<T> whenCompleteAsync(@Nonnull BiConsumer<? super T, ? super Throwable> action) {
+        ScopedCompletionStage<T> next = next(action);
+        next.delegate = delegate.whenCompleteAsync((BiConsumer) next);
+        return next;
+    }
+
+    @Override
+    public ScopedCompletionStage<T> whenCompleteAsync(@Nonnull BiConsumer<? super T, ? super Throwable> action,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<T> next = next(action);
+        next.delegate = delegate.whenCompleteAsync((BiConsumer) next, executor);
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> handle(@Nonnull BiFunction<? super T, Throwable, ? extends U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.handle((BiFunction) next.asBiFunction());
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> handleAsync(@Nonnull BiFunction<? super T, Throwable, ? extends U> fn) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.handleAsync((BiFunction) next.asBiFunction());
+        return next;
+    }
+
+    @Override
+    public <U> ScopedCompletionStage<U> handleAsync(@Nonnull BiFunction<? super T, Throwable, ? extends U> fn,
+            @Nonnull Executor executor) {
+        ScopedCompletionStage<U> next = next(fn);
+        next.delegate = delegate.handleAsync((BiFunction) next.asBiFunction(), executor);
+        return next;
+    }
+
+    @Override
+    public CompletableFuture<T> toCompletableFuture() {
+        return delegate.toCompletableFuture();
+    }
+
+    @Override
+    public Object apply(Object a) {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            return ((Function) callback).apply(a);
+        }
+        Scope.bind(scope);
+        try {
+            return ((Function) callback).apply(a);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    private BiFunction<Object, Object, Object> asBiFunction() {
+        return this::applyBoth;
+    }
+
+    /**
+     * {@link BiFunction} 和 {@link Function} 的 andThen 冲突，不能同时实现，所以 {@link BiFunction} 的回调多一次方法引用的分配
+     */
+    private Object applyBoth(Object a, Object b) {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            return ((BiFunction) callback).apply(a, b);
+        }
+        Scope.bind(scope);
+        try {
+            return ((BiFunction) callback).apply(a, b);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public void accept(Object a) {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            ((Consumer) callback).accept(a);
+            return;
+        }
+        Scope.bind(scope);
+        try {
+            ((Consumer) callback).accept(a);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public void accept(Object a, Object b) {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            ((BiConsumer) callback).accept(a, b);
+            return;
+        }
+        Scope.bind(scope);
+        try {
+            ((BiConsumer) callback).accept(a, b);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public void run() {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            ((Runnable) callback).run();
+            return;
+        }
+        Scope.bind(scope);
+        try {
+            ((Runnable) callback).run();
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ScopedCompletionStage{" + delegate + "}";
+    }
+}
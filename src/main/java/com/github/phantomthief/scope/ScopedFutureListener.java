@@ -0,0 +1,39 @@
+package com.github.phantomthief.scope;
+
+import javax.annotation.Nonnull;
+
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+/**
+ * 在创建时的 {@link Scope} 中执行的 {@link GenericFutureListener}，线程已经绑定了同一个 {@link Scope} 时不会重复绑定
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ * @see ScopeNettyUtils#wrap(GenericFutureListener)
+ */
+final class ScopedFutureListener<F extends Future<?>> implements GenericFutureListener<F> {
+
+    private final Scope scope;
+    private final GenericFutureListener<F> delegate;
+
+    ScopedFutureListener(@Nonnull Scope scope, @Nonnull GenericFutureListener<F> delegate) {
+        this.scope = scope;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void operationComplete(F future) throws Exception {
+        Scope oldScope = Scope.currentScope();
+        if (oldScope == scope) {
+            delegate.operationComplete(future);
+            return;
+        }
+        Scope.bind(scope);
+        try {
+            delegate.operationComplete(future);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+}
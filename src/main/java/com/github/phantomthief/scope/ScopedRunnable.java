@@ -0,0 +1,90 @@
+package com.github.phantomthief.scope;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * 在创建时的 {@link Scope} 中执行的 {@link Runnable}，执行结束后恢复线程原来绑定的 {@link Scope}
+ * <p>
+ * 单次执行的任务从创建到执行结束持有 {@link Scope} 的引用，参考 {@link Scope#SCOPE_RECYCLE_POOL_SIZE}；
+ * 不会再执行的任务（比如被拒绝或者被取消）需要调用 {@link #abandon()} 提前释放，之后再执行会抛出 {@link CancellationException}。
+ * 开始执行时已经过了 {@link Scope} 的截止时间的任务和 {@link ScopedCallable} 一样抛出 {@link CancellationException}，
+ * 所以 {@code submit} 返回的 future 会以失败结束；周期执行的任务抛出异常后不会再被调度。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+final class ScopedRunnable implements Runnable {
+
+    private static final AtomicIntegerFieldUpdater<ScopedRunnable> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ScopedRunnable.class, "state");
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    @Nullable
+    private final Scope scope;
+    private final Runnable runnable;
+    private final boolean periodic;
+    private volatile int state;
+
+    ScopedRunnable(@Nullable Scope scope, @Nonnull Runnable runnable) {
+        this(scope, runnable, false);
+    }
+
+    /**
+     * @param periodic 会多次执行的任务不持有引用，调用方需要保证 {@code scope} 不会被回收（比如通过 {@link Scope#getCurrentScope()} 获取）
+     */
+    ScopedRunnable(@Nullable Scope scope, @Nonnull Runnable runnable, boolean periodic) {
+        this.scope = scope;
+        this.runnable = runnable;
+        this.periodic = periodic;
+        if (scope != null && !periodic) {
+            scope.retain();
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean retained = scope != null && !periodic;
+        if (retained && !STATE_UPDATER.compareAndSet(this, NEW, RUNNING)) {
+            // 已经释放了引用，Scope 可能已经被回收
+            throw new CancellationException("task abandoned.");
+        }
+        try {
+            if (scope != null && scope.isDeadlineExceeded()) {
+                // 在队列里等待的时候已经过了截止时间，调用方不会再等这个任务了
+                throw new CancellationException("scope deadline exceeded.");
+            }
+            Scope oldScope = Scope.currentScope();
+            if (oldScope == scope) {
+                // 比如 direct executor 在提交任务的线程上直接执行，不需要重新绑定
+                runnable.run();
+                return;
+            }
+            Scope.bind(scope);
+            try {
+                runnable.run();
+            } finally {
+                Scope.restore(oldScope);
+            }
+        } finally {
+            if (retained) {
+                scope.release();
+            }
+        }
+    }
+
+    /**
+     * 任务不会再执行时释放持有的引用，已经开始执行的任务在执行结束时释放，多次调用只释放一次
+     */
+    void abandon() {
+        if (scope != null && !periodic && state == NEW && STATE_UPDATER.compareAndSet(this, NEW, ABANDONED)) {
+            scope.release();
+        }
+    }
+}
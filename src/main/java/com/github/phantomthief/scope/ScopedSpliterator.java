@@ -0,0 +1,82 @@
+package com.github.phantomthief.scope;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 遍历时绑定 {@link Scope} 的 {@link Spliterator}，{@link #trySplit()} 分出去的部分也会绑定同一个 {@link Scope}，
+ * 所以并行流中被其它线程窃取的部分同样能读到 {@link Scope} 中的数据
+ * <p>
+ * 流的中间操作都是在数据源的遍历中执行的，所以绑定在数据源上就能覆盖它们；
+ * 已经绑定了同一个 {@link Scope} 的线程（比如发起并行流的调用方）不会重复绑定。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ * @see ScopeUtils#withCurrentScope(java.util.stream.Stream)
+ */
+final class ScopedSpliterator<T> implements Spliterator<T> {
+
+    private final Scope scope;
+    private final Spliterator<T> delegate;
+
+    ScopedSpliterator(@Nonnull Scope scope, @Nonnull Spliterator<T> delegate) {
+        this.scope = scope;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (Scope.currentScope() == scope) {
+            return delegate.tryAdvance(action);
+        }
+        Scope oldScope = Scope.bind(scope);
+        try {
+            return delegate.tryAdvance(action);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (Scope.currentScope() == scope) {
+            delegate.forEachRemaining(action);
+            return;
+        }
+        Scope oldScope = Scope.bind(scope);
+        try {
+            delegate.forEachRemaining(action);
+        } finally {
+            Scope.restore(oldScope);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Spliterator<T> split = delegate.trySplit();
+        return split == null ? null : new ScopedSpliterator<>(scope, split);
+    }
+
+    @Override
+    public long estimateSize() {
+        return delegate.estimateSize();
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return delegate.getExactSizeIfKnown();
+    }
+
+    @Override
+    public int characteristics() {
+        return delegate.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return delegate.getComparator();
+    }
+}
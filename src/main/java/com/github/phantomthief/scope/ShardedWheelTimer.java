@@ -0,0 +1,199 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 分片的时间轮定时器，每个分片一个线程和一个 {@link TimingWheel}
+ * <p>
+ * 和 {@link java.util.concurrent.ScheduledThreadPoolExecutor} 所有线程共用一把锁保护的 DelayedWorkQueue 不同，
+ * 提交和取消任务只是把任务压入随机选中分片的无锁栈，由分片线程在每个 tick 统一放入或移出时间轮，
+ * 都是 O(1) 的，而且不同分片之间没有竞争。
+ * <p>
+ * 分片空闲（时间轮和两个栈都为空）时线程会一直 park，直到有新任务提交。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class ShardedWheelTimer implements RetryTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedWheelTimer.class);
+
+    private final Shard[] shards;
+    private final int mask;
+
+    /**
+     * @param shards 分片数量，会向上取整到 2 的幂
+     */
+    ShardedWheelTimer(int shards, long tickMs, @Nonnull ThreadFactory threadFactory) {
+        checkArgument(shards > 0, "shards must be positive.");
+        checkArgument(tickMs > 0, "tickMs must be positive.");
+        int size = Integer.highestOneBit(shards - 1) << 1;
+        if (size == 0) {
+            size = 1;
+        }
+        this.shards = new Shard[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard(MILLISECONDS.toNanos(tickMs), threadFactory);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Timeout schedule(@Nonnull Runnable task, long delayMs) {
+        Shard shard = shards[ThreadLocalRandom.current().nextInt() & mask];
+        WheelTimeout timeout = new WheelTimeout(shard, task, nanoTime() + MILLISECONDS.toNanos(delayMs));
+        shard.submit(timeout);
+        return timeout;
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    private static final class WheelTimeout extends TimingWheel.Node implements Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final Shard shard;
+        /**
+         * 取消或者执行后置空，这样即使节点还没从时间轮或者取消栈中移除，也不会持有业务的闭包
+         */
+        private Runnable task;
+        private volatile int state;
+
+        private WheelTimeout pendingNext;
+        private WheelTimeout cancelledNext;
+
+        WheelTimeout(Shard shard, Runnable task, long deadlineNanos) {
+            this.shard = shard;
+            this.task = task;
+            deadlineNanos(deadlineNanos);
+        }
+
+        @Override
+        public void cancel() {
+            if (STATE_UPDATER.compareAndSet(this, PENDING, CANCELLED)) {
+                task = null;
+                shard.cancel(this);
+            }
+        }
+
+        void expire() {
+            if (STATE_UPDATER.compareAndSet(this, PENDING, EXPIRED)) {
+                Runnable toRun = task;
+                task = null;
+                try {
+                    toRun.run();
+                } catch (Throwable e) {
+                    logger.error("", e);
+                }
+            }
+        }
+    }
+
+    private static final class Shard implements Runnable {
+
+        private final AtomicReference<WheelTimeout> pending = new AtomicReference<>();
+        private final AtomicReference<WheelTimeout> cancelled = new AtomicReference<>();
+        private final TimingWheel<WheelTimeout> wheel;
+        private final long tickNanos;
+        private final Thread thread;
+
+        private volatile boolean idle;
+        /**
+         * 只在分片线程中修改
+         */
+        private volatile int size;
+
+        Shard(long tickNanos, ThreadFactory threadFactory) {
+            this.tickNanos = tickNanos;
+            this.wheel = new TimingWheel<>(tickNanos, nanoTime());
+            this.thread = threadFactory.newThread(this);
+            this.thread.start();
+        }
+
+        void submit(WheelTimeout timeout) {
+            WheelTimeout head;
+            do {
+                head = pending.get();
+                timeout.pendingNext = head;
+            } while (!pending.compareAndSet(head, timeout));
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void cancel(WheelTimeout timeout) {
+            WheelTimeout head;
+            do {
+                head = cancelled.get();
+                timeout.cancelledNext = head;
+            } while (!cancelled.compareAndSet(head, timeout));
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                // 先推进时间再放入新任务，这样空闲很久之后时间轮不会从很早的 tick 开始逐层降级
+                wheel.advance(nanoTime(), WheelTimeout::expire);
+                drain();
+                size = wheel.size();
+                if (size == 0 && pending.get() == null) {
+                    idle = true;
+                    // park 前再检查一次，避免错过 idle 设置之前提交的任务
+                    if (pending.get() == null) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                } else {
+                    LockSupport.parkNanos(this, tickNanos);
+                }
+            }
+        }
+
+        /**
+         * 先取走取消的任务再取走新提交的，原因同 {@link LongCostTracker}
+         */
+        private void drain() {
+            WheelTimeout cancelledHead = cancelled.getAndSet(null);
+            WheelTimeout pendingHead = pending.getAndSet(null);
+            while (pendingHead != null) {
+                WheelTimeout next = pendingHead.pendingNext;
+                pendingHead.pendingNext = null;
+                if (pendingHead.state == WheelTimeout.PENDING) {
+                    wheel.add(pendingHead);
+                }
+                pendingHead = next;
+            }
+            while (cancelledHead != null) {
+                WheelTimeout next = cancelledHead.cancelledNext;
+                cancelledHead.cancelledNext = null;
+                wheel.remove(cancelledHead);
+                cancelledHead = next;
+            }
+        }
+    }
+}
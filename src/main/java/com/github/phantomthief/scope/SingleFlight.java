@@ -0,0 +1,204 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.getCurrentScope;
+import static com.github.phantomthief.scope.Scope.runWithExistScope;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.github.phantomthief.util.ThrowableSupplier;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * 合并相同 key 的并发调用：同一个 key 同时只有一个 {@link ScopeAsyncRetry#callWithRetry} 在进行，
+ * 其它调用方共享它的结果，适合缓存穿透时大量相同的请求同时打到下游的场景
+ * <p>
+ * 使用方法:
+ * <pre>{@code
+ *
+ * class MyClass {
+ *
+ *   private final SingleFlight&lt;Long, User&gt; userLoader = SingleFlight.create(ScopeAsyncRetry.shared());
+ *
+ *   ListenableFuture&lt;User&gt; getUser(long id) {
+ *     return userLoader.callWithRetry(id, 100, retryNTimes(3), () -> asyncGetUser(id));
+ *   }
+ * }
+ *
+ * }
+ * </pre>
+ * <p>
+ * 每个调用方拿到的是自己的 future，完成时会绑定调用方自己的 {@link Scope}，所以直接用 directExecutor 注册的 listener 也能读到调用方的数据；
+ * 一个调用方 cancel 自己的 future 不影响其它调用方，所有调用方都 cancel 之后才会 cancel 共享的调用。
+ * <p>
+ * 共享的调用在第一个调用方的 {@link Scope} 中执行，重试策略、超时时间和截止时间也都以第一个调用方为准。
+ * 调用完成后就从表中移除，之后的调用会重新发起，这里只合并同时在进行的调用，不做缓存。
+ * <p>
+ * 进行中的调用保存在 {@link ConcurrentHashMap} 中，加入已有的调用只需要一次无锁的读取和一次 CAS。
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ScopeAsyncRetry retrier;
+    private final ConcurrentHashMap<K, InFlight<K, V>> inFlights = new ConcurrentHashMap<>();
+
+    private SingleFlight(ScopeAsyncRetry retrier) {
+        this.retrier = retrier;
+    }
+
+    public static <K, V> SingleFlight<K, V> create(@Nonnull ScopeAsyncRetry retrier) {
+        return new SingleFlight<>(checkNotNull(retrier));
+    }
+
+    /**
+     * 如果相同 {@code key} 的调用正在进行，直接共享它的结果，否则通过 {@link ScopeAsyncRetry#callWithRetry} 发起一次新的调用
+     *
+     * @param singleCallTimeoutMs 单次调用超时限制，单位：ms
+     * @param func 需要重试的调用
+     * @return 当前调用方自己的future
+     */
+    @Nonnull
+    public <X extends Throwable> ListenableFuture<V> callWithRetry(@Nonnull K key, long singleCallTimeoutMs,
+            @Nonnull RetryPolicy retryPolicy, @Nonnull ThrowableSupplier<ListenableFuture<V>, X> func) {
+        checkNotNull(key);
+        checkNotNull(retryPolicy);
+        checkNotNull(func);
+        checkArgument(singleCallTimeoutMs > 0);
+
+        Scope scope = getCurrentScope();
+        while (true) {
+            InFlight<K, V> exist = inFlights.get(key);
+            if (exist == null) {
+                InFlight<K, V> created = new InFlight<>(inFlights, key);
+                exist = inFlights.putIfAbsent(key, created);
+                if (exist == null) {
+                    Subscriber<V> subscriber = new Subscriber<>(created, scope);
+                    created.start(() -> retrier.callWithRetry(singleCallTimeoutMs, retryPolicy, func));
+                    return subscriber;
+                }
+            }
+            if (exist.tryJoin()) {
+                return new Subscriber<>(exist, scope);
+            }
+            // 所有调用方都 cancel 了，但是还没从表里移除
+            inFlights.remove(key, exist);
+        }
+    }
+
+    /**
+     * @return 正在进行的调用数量
+     */
+    int inFlightSize() {
+        return inFlights.size();
+    }
+
+    /**
+     * 一次共享的调用，{@link #subscribers} 为 0 之后不再接受新的调用方
+     */
+    private static final class InFlight<K, V> extends AbstractFuture<V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<InFlight> SUBSCRIBERS_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(InFlight.class, "subscribers");
+
+        private final ConcurrentHashMap<K, InFlight<K, V>> inFlights;
+        private final K key;
+
+        /**
+         * 创建时就算上了第一个调用方
+         */
+        private volatile int subscribers = 1;
+
+        InFlight(ConcurrentHashMap<K, InFlight<K, V>> inFlights, K key) {
+            this.inFlights = inFlights;
+            this.key = key;
+        }
+
+        boolean tryJoin() {
+            int current;
+            do {
+                current = subscribers;
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!SUBSCRIBERS_UPDATER.compareAndSet(this, current, current + 1));
+            return true;
+        }
+
+        void leave() {
+            if (SUBSCRIBERS_UPDATER.decrementAndGet(this) == 0) {
+                // 没有调用方再等这个结果了，通过 setFuture 传递到共享的调用上
+                cancel(false);
+            }
+        }
+
+        /**
+         * 发起共享的调用；同步抛出的异常也作为调用的结果，保证已经加入的调用方都能完成，并且从表中移除
+         */
+        void start(Supplier<ListenableFuture<V>> call) {
+            try {
+                setFuture(call.get());
+            } catch (Throwable e) {
+                setException(e);
+                throw e;
+            }
+        }
+
+        @Override
+        protected void afterDone() {
+            inFlights.remove(key, this);
+        }
+    }
+
+    /**
+     * 单个调用方的 future，共享的调用完成后，在调用方自己的 {@link Scope} 中设置结果
+     */
+    private static final class Subscriber<V> extends AbstractFuture<V> implements Runnable {
+
+        private final InFlight<?, V> inFlight;
+        @Nullable
+        private final Scope scope;
+
+        Subscriber(InFlight<?, V> inFlight, @Nullable Scope scope) {
+            this.inFlight = inFlight;
+            this.scope = scope;
+            inFlight.addListener(this, directExecutor());
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            runWithExistScope(scope, () -> {
+                try {
+                    set(getDone(inFlight));
+                } catch (ExecutionException e) {
+                    setException(e.getCause());
+                } catch (CancellationException e) {
+                    cancel(false);
+                }
+            });
+        }
+
+        @Override
+        protected void afterDone() {
+            if (isCancelled() && !inFlight.isDone()) {
+                inFlight.leave();
+            }
+        }
+    }
+}
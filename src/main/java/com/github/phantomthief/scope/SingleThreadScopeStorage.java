@@ -0,0 +1,71 @@
+package com.github.phantomthief.scope;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+
+import java.util.Arrays;
+
+/**
+ * 没有任何同步的实现，只能在一个线程中使用
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class SingleThreadScopeStorage implements ScopeStorage {
+
+    private static final Object[] EMPTY_SLOTS = {};
+
+    private Object[] slots = EMPTY_SLOTS;
+
+    @Override
+    public Object get(int index) {
+        Object[] current = slots;
+        return index < current.length ? current[index] : null;
+    }
+
+    @Override
+    public void set(int index, Object value) {
+        if (index < slots.length) {
+            slots[index] = value;
+        } else if (value != null) {
+            ensureCapacity(index)[index] = value;
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(int index, Object value) {
+        Object[] current = ensureCapacity(index);
+        Object exist = current[index];
+        if (exist == null) {
+            current[index] = value;
+        }
+        return exist;
+    }
+
+    @Override
+    public void replace(int index, Object expect, Object update) {
+        Object[] current = slots;
+        if (index < current.length && current[index] == expect) {
+            current[index] = update;
+        }
+    }
+
+    @Override
+    public Object[] snapshot() {
+        return slots.clone();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    private Object[] ensureCapacity(int index) {
+        Object[] current = slots;
+        if (index < current.length) {
+            return current;
+        }
+        slots = copyOf(current, max(max(index + 1, current.length << 1), ScopeKey.allocatedCount()));
+        return slots;
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 分层时间轮，按到期时间把 {@link Node} 放到不同层级的槽位中
+ * <p>
+ * 每层 64 个槽位，第 n 层每个槽位覆盖 64^n 个 tick；当低层转完一圈时，把高层对应槽位中的节点重新分配到低层。
+ * 所以每次 {@link #advance} 只需要处理到期的节点（以及均摊到每个节点上常数次的降级），和时间轮中节点的总数无关，
+ * 空闲的 tick 会根据每层的槽位 bitmap 直接跳过；
+ * {@link #add} 和 {@link #remove} 都是 O(1) 的。
+ * <p>
+ * 节点直接作为双向链表的元素存放在槽位中，不需要额外分配内存。
+ * <p>
+ * 注意: 本类不是线程安全的，只能由一个线程操作。
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+final class TimingWheel<T extends TimingWheel.Node> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Node[][] wheels = new Node[LEVELS][WHEEL_SIZE];
+    /**
+     * 每层一个 bitmap，标记哪些槽位非空，用来跳过空闲的 tick
+     */
+    private final long[] occupied = new long[LEVELS];
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickNanos 每个 tick 的时长，也就是时间轮的精度
+     * @param startNanos 起始时间，和 {@link System#nanoTime()} 同一基准
+     */
+    TimingWheel(long tickNanos, long startNanos) {
+        checkArgument(tickNanos > 0, "tickNanos must be positive.");
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 节点会在 {@link Node#deadlineNanos()} 之后的第一次 {@link #advance} 中到期
+     */
+    void add(@Nonnull T node) {
+        Node n = node;
+        checkArgument(n.level < 0, "node was already in wheel.");
+        place(n, currentTick + 1);
+        size++;
+    }
+
+    /**
+     * @return {@code true} 如果节点还在时间轮中并被移除
+     */
+    boolean remove(@Nonnull T node) {
+        Node n = node;
+        if (n.level < 0) {
+            return false;
+        }
+        unlink(n);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 把时间推进到 {@code nowNanos}，所有在此之前到期的节点会从时间轮中移除并交给 {@code onExpired}
+     */
+    @SuppressWarnings("unchecked")
+    void advance(long nowNanos, @Nonnull Consumer<? super T> onExpired) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            int lowest = lowestOccupiedLevel();
+            if (lowest > 0) {
+                // 低层都是空的，下一次有事情发生只可能是 lowest 层的降级
+                int shift = WHEEL_BITS * lowest;
+                long next = ((currentTick >>> shift) + 1) << shift;
+                if (next > targetTick) {
+                    currentTick = targetTick;
+                    return;
+                }
+                currentTick = next - 1;
+            }
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = WHEEL_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> shift) & WHEEL_MASK));
+                }
+            }
+            int slot = (int) (currentTick & WHEEL_MASK);
+            Node node;
+            while ((node = wheels[0][slot]) != null) {
+                unlink(node);
+                size--;
+                onExpired.accept((T) node);
+            }
+        }
+    }
+
+    private int lowestOccupiedLevel() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (occupied[level] != 0) {
+                return level;
+            }
+        }
+        return LEVELS;
+    }
+
+    private void cascade(int level, int slot) {
+        Node node = wheels[level][slot];
+        wheels[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        while (node != null) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            node.level = -1;
+            place(node, currentTick);
+            node = next;
+        }
+    }
+
+    private void place(Node node, long minTick) {
+        long deadlineTick = max(ceilDiv(node.deadlineNanos - startNanos, tickNanos), minTick);
+        long delta = deadlineTick - currentTick;
+        if (delta >= MAX_TICKS) {
+            // 超出时间轮范围的节点先放在最高层，降级时会根据真实的到期时间重新计算
+            deadlineTick = currentTick + MAX_TICKS - 1;
+            delta = MAX_TICKS - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Node head = wheels[level][slot];
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        wheels[level][slot] = node;
+        occupied[level] |= 1L << slot;
+        node.level = level;
+        node.slot = slot;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            wheels[node.level][node.slot] = node.next;
+            if (node.next == null) {
+                occupied[node.level] &= ~(1L << node.slot);
+            }
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.level = -1;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        long q = x / y;
+        return q * y < x ? q + 1 : q;
+    }
+
+    /**
+     * 时间轮中的节点，同一时刻只能属于一个时间轮
+     */
+    abstract static class Node {
+
+        private long deadlineNanos;
+        private Node prev;
+        private Node next;
+        private int level = -1;
+        private int slot;
+
+        long deadlineNanos() {
+            return deadlineNanos;
+        }
+
+        /**
+         * 只能在节点不在时间轮中时修改
+         */
+        void deadlineNanos(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
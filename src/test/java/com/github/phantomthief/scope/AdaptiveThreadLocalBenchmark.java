@@ -0,0 +1,82 @@
+package com.github.phantomthief.scope;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 对比 {@link JdkThreadLocal}、{@link NettyFastThreadLocal} 和 {@link AdaptiveThreadLocal} 在两种线程上的性能
+ *
+ * 直接运行 {@link #main} 会分别在普通线程和 {@link FastThreadLocalExecutor} 提供的 FastThreadLocalThread 上各跑一遍
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+@BenchmarkMode(Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(8)
+@Fork(1)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+public class AdaptiveThreadLocalBenchmark {
+
+    @Param({"jdk", "netty", "adaptive"})
+    private String type;
+
+    private MyThreadLocal<String> threadLocal;
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "jdk":
+                threadLocal = new JdkThreadLocal<>();
+                break;
+            case "netty":
+                threadLocal = new NettyFastThreadLocal<>();
+                break;
+            default:
+                threadLocal = new AdaptiveThreadLocal<>();
+                break;
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        return threadLocal.get();
+    }
+
+    @Benchmark
+    public void setAndRemove() {
+        threadLocal.set("test");
+        threadLocal.remove();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options normalThread = new OptionsBuilder()
+                .include(AdaptiveThreadLocalBenchmark.class.getName())
+                .build();
+        new Runner(normalThread).run();
+
+        Options fastThreadLocalThread = new OptionsBuilder()
+                .include(AdaptiveThreadLocalBenchmark.class.getName())
+                .jvmArgsAppend("-Djmh.executor=CUSTOM",
+                        "-Djmh.executor.class=" + FastThreadLocalExecutor.class.getName())
+                .build();
+        new Runner(fastThreadLocalThread).run();
+    }
+}
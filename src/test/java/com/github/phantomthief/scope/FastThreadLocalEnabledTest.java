@@ -1,12 +1,22 @@
 package com.github.phantomthief.scope;
 
 import static com.github.phantomthief.scope.MyThreadLocalFactory.USE_FAST_THREAD_LOCAL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.InternalThreadLocalMap;
+
 /**
  * @author w.vela
  * Created on 2019-07-08.
@@ -26,4 +36,77 @@ class FastThreadLocalEnabledTest {
         assertTrue(Scope.tryEnableFastThreadLocal());
         assertTrue(Scope.fastThreadLocalEnabled());
     }
+
+    @Test
+    void testAdaptive() throws Exception {
+        MyThreadLocal<String> threadLocal = new AdaptiveThreadLocal<>();
+        assertTrue(MyThreadLocalFactory.isFastThreadLocal(threadLocal));
+        threadLocal.set("test");
+        assertEquals("test", threadLocal.get());
+
+        AtomicReference<String> fromFastThread = new AtomicReference<>();
+        Thread thread = new DefaultThreadFactory("test").newThread(() -> {
+            assertNull(threadLocal.get());
+            threadLocal.set("fast");
+            fromFastThread.set(threadLocal.get());
+            threadLocal.remove();
+        });
+        assertTrue(thread instanceof FastThreadLocalThread);
+        thread.start();
+        thread.join();
+        assertEquals("fast", fromFastThread.get());
+
+        assertEquals("test", threadLocal.get());
+        threadLocal.remove();
+        assertNull(threadLocal.get());
+    }
+
+    /**
+     * 普通线程和虚拟线程都不是 {@link FastThreadLocalThread}，使用 jdk thread local，不会分配 InternalThreadLocalMap
+     */
+    @Test
+    void testAdaptiveOnOtherThreads() throws Exception {
+        MyThreadLocal<String> threadLocal = new AdaptiveThreadLocal<>();
+        AtomicReference<String> value = new AtomicReference<>();
+        AtomicBoolean mapAllocated = new AtomicBoolean(true);
+        Runnable task = () -> {
+            threadLocal.set("test");
+            value.set(threadLocal.get());
+            mapAllocated.set(InternalThreadLocalMap.getIfSet() != null);
+            threadLocal.remove();
+        };
+        Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+        assertEquals("test", value.get());
+        assertFalse(mapAllocated.get());
+
+        Method startVirtualThread;
+        try {
+            startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            // 虚拟线程需要 JDK 21+
+            return;
+        }
+        value.set(null);
+        mapAllocated.set(true);
+        ((Thread) startVirtualThread.invoke(null, task)).join();
+        assertEquals("test", value.get());
+        assertFalse(mapAllocated.get());
+    }
+
+    @Test
+    void testFrozenAfterFirstUse() {
+        SubstituteThreadLocal<String> threadLocal = new SubstituteThreadLocal<>(new JdkThreadLocal<>());
+        assertNull(threadLocal.get());
+        assertTrue(threadLocal.setRealThreadLocal(new AdaptiveThreadLocal<>()));
+        assertFalse(threadLocal.isFrozen());
+
+        threadLocal.set("test");
+        assertTrue(threadLocal.isFrozen());
+        assertFalse(threadLocal.setRealThreadLocal(new JdkThreadLocal<>()));
+        assertTrue(threadLocal.getRealThreadLocal() instanceof AdaptiveThreadLocal);
+        assertEquals("test", threadLocal.get());
+        threadLocal.remove();
+    }
 }
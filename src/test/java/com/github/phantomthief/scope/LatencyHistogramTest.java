@@ -0,0 +1,49 @@
+package com.github.phantomthief.scope;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentile() {
+        long now = 0;
+        LatencyHistogram histogram = new LatencyHistogram(SECONDS.toNanos(10), now);
+        assertEquals(-1, histogram.percentile(0.9, 1, now));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(MILLISECONDS.toNanos(i), now);
+        }
+        assertEquals(100, histogram.count(now));
+        assertEquals(-1, histogram.percentile(0.9, 101, now));
+        long p90 = histogram.percentile(0.9, 100, now);
+        assertTrue(p90 >= MILLISECONDS.toNanos(90) && p90 <= MILLISECONDS.toNanos(90) * 9 / 8, "p90:" + p90);
+        long p50 = histogram.percentile(0.5, 100, now);
+        assertTrue(p50 >= MILLISECONDS.toNanos(50) && p50 <= MILLISECONDS.toNanos(50) * 9 / 8, "p50:" + p50);
+
+        // 上一个窗口的数据还在
+        now += SECONDS.toNanos(10);
+        assertEquals(p90, histogram.percentile(0.9, 100, now));
+        // 两个窗口之后就过期了
+        now += SECONDS.toNanos(10);
+        assertEquals(-1, histogram.percentile(0.9, 1, now));
+        assertEquals(0, histogram.count(now));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.ScopeUtils.trackLongCost;
+import static java.time.Duration.ofMinutes;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link ScopeUtils#trackLongCost} 开启再关闭一次的开销
+ *
+ * 直接运行 {@link #main} 会带上 -prof gc，分别在 8、32、64 个线程下，对比关闭和开启
+ * {@link LongCostTracker#LONG_COST_TRACK_POOL_SIZE} 时的耗时和内存分配
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class LongCostTrackBenchmark {
+
+    private static final Duration TIMEOUT = ofMinutes(1);
+    private static final Consumer<Duration> REPORT = duration -> { };
+
+    @Benchmark
+    public void openAndClose() {
+        trackLongCost(TIMEOUT, REPORT).close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : new int[] {8, 32, 64}) {
+            for (int poolSize : new int[] {0, 256}) {
+                Options options = new OptionsBuilder()
+                        .include(LongCostTrackBenchmark.class.getName())
+                        .threads(threads)
+                        .addProfiler(GCProfiler.class)
+                        .jvmArgsAppend("-D" + LongCostTracker.LONG_COST_TRACK_POOL_SIZE + "=" + poolSize)
+                        .build();
+                new Runner(options).run();
+            }
+        }
+    }
+}
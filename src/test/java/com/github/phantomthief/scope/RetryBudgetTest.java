@@ -0,0 +1,48 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.RetryPolicy.retryNTimes;
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class RetryBudgetTest {
+
+    @Test
+    void test() {
+        RetryBudget budget = RetryBudget.create(0.1, ofSeconds(10), 2);
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+        for (int i = 0; i < 100; i++) {
+            budget.recordRequest();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryAcquireRetry());
+        }
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testRelease() {
+        RetryBudget budget = RetryBudget.create(0, ofSeconds(10), 1);
+        assertTrue(budget.tryAcquireRetry());
+        budget.releaseRetry();
+        // 多余的归还不会让计数变成负数
+        budget.releaseRetry();
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testWithBudgetTwice() {
+        RetryPolicy policy = retryNTimes(3).withBudget(RetryBudget.create(0.1));
+        assertThrows(IllegalStateException.class, () -> policy.withBudget(RetryBudget.create(0.2)));
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.ScopeKey.allocate;
+import static com.github.phantomthief.scope.ScopeKey.withDefaultValue;
+import static com.github.phantomthief.scope.ScopeKey.withInitializer;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * 读取 {@link ScopeKey} 时每次操作的内存分配情况
+ *
+ * 直接运行 {@link #main} 会带上 -prof gc，如果任何一个读操作的 gc.alloc.rate.norm 超过 {@link #MAX_BYTES_PER_OP}，则抛出异常
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Thread)
+public class ScopeAllocationBenchmark {
+
+    private static final double MAX_BYTES_PER_OP = 1.0D;
+    private static final String ALLOC_RATE_NORM = "·gc.alloc.rate.norm";
+
+    private static final ScopeKey<Long> longScopeKey = withDefaultValue(0L);
+    private static final ScopeKey<String> stringScopeKey = withDefaultValue("asdasdasd");
+    private static final ScopeKey<Integer> intScopeKey = withDefaultValue(122);
+    private static final ScopeKey<String> emptyScopeKey = allocate();
+    private static final ScopeKey<Set<String>> setScopeKey = withInitializer(() -> ImmutableSet.of("11", "22", "33"));
+
+    @Setup
+    public void setup() {
+        com.github.phantomthief.scope.Scope.beginScope();
+        setScopeKey.get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        com.github.phantomthief.scope.Scope.endScope();
+    }
+
+    @Benchmark
+    public void getDefaultValue(Blackhole blackhole) {
+        blackhole.consume(longScopeKey.get());
+        blackhole.consume(stringScopeKey.get());
+        blackhole.consume(intScopeKey.get());
+        blackhole.consume(emptyScopeKey.get());
+    }
+
+    @Benchmark
+    public Set<String> getInitialized() {
+        return setScopeKey.get();
+    }
+
+    @Benchmark
+    public void removeAbsent() {
+        emptyScopeKey.set(null);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ScopeAllocationBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        for (RunResult runResult : new Runner(options).run()) {
+            Result<?> allocated = runResult.getSecondaryResults().get(ALLOC_RATE_NORM);
+            String benchmark = runResult.getParams().getBenchmark();
+            if (allocated == null) {
+                throw new IllegalStateException("no allocation result for " + benchmark);
+            }
+            if (allocated.getScore() > MAX_BYTES_PER_OP) {
+                throw new IllegalStateException(benchmark + " allocated " + allocated.getScore() + " bytes/op");
+            }
+        }
+    }
+}
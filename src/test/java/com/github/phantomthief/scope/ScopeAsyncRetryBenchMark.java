@@ -4,6 +4,8 @@ import static com.github.phantomthief.scope.RetryPolicy.retryNTimes;
 import static com.github.phantomthief.scope.Scope.beginScope;
 import static com.github.phantomthief.scope.Scope.endScope;
 import static com.github.phantomthief.scope.ScopeAsyncRetry.createScopeAsyncRetry;
+import static com.github.phantomthief.scope.ScopeAsyncRetry.createScopeAsyncRetryWithWheelTimer;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.Thread.MAX_PRIORITY;
 
@@ -22,6 +24,7 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
@@ -31,6 +34,8 @@ import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
+ * 直接运行 {@link #main} 会带上 -prof gc，可以通过 gc.alloc.rate.norm 看到每次调用的内存分配
+ *
  * @author myco
  * Created on 2019-06-05
  */
@@ -52,6 +57,7 @@ public class ScopeAsyncRetryBenchMark {
 
     private static ScopeAsyncRetry directCallbackRetry;
     private static ScopeAsyncRetry isolateCallbackRetry;
+    private static ScopeAsyncRetry wheelTimerRetry;
 
     @Setup
     public static void init() {
@@ -68,6 +74,7 @@ public class ScopeAsyncRetryBenchMark {
                                 .setNameFormat("default-isolateCallbackRetry-%d")
                                 .build()),
                         Executors.newCachedThreadPool());
+        wheelTimerRetry = createScopeAsyncRetryWithWheelTimer(Executors.newCachedThreadPool());
         beginScope();
     }
 
@@ -120,9 +127,22 @@ public class ScopeAsyncRetryBenchMark {
                 () -> successAfter("test", 1000));
     }
 
+    @Benchmark
+    public static void testAllTimeoutWithWheelTimer() {
+        wheelTimerRetry.callWithRetry(10, retryNTimes(3, 10),
+                () -> successAfter("test", 1000));
+    }
+
+    @Benchmark
+    public static ListenableFuture<String> testImmediateSuccess() {
+        return wheelTimerRetry.callWithRetry(10, retryNTimes(3, 10),
+                () -> immediateFuture("test"));
+    }
+
     public static void main(String[] args) throws Exception {
         Options options = new OptionsBuilder()
                 .include(ScopeAsyncRetryBenchMark.class.getName())
+                .addProfiler(GCProfiler.class)
                 .build();
         new Runner(options).run();
     }
@@ -1,5 +1,6 @@
 package com.github.phantomthief.scope;
 
+import static com.github.phantomthief.scope.RetryPolicy.hedgeAtPercentile;
 import static com.github.phantomthief.scope.RetryPolicy.retryNTimes;
 import static com.github.phantomthief.scope.Scope.beginScope;
 import static com.github.phantomthief.scope.Scope.endScope;
@@ -12,6 +13,7 @@ import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static java.lang.Thread.MAX_PRIORITY;
 import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -30,6 +32,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -441,7 +444,8 @@ class ScopeAsyncRetryTest {
             sleepUninterruptibly(1, SECONDS);
             assertEquals(20, getCallTimes());
             assertEquals(0, succNum.get());
-            assertEquals(20, failedNum.get());
+            // 超时的第一次尝试先于第二次尝试返回并作为最终结果，第二次尝试随之被放弃，不再算作一次失败
+            assertEquals(10, failedNum.get());
         } finally {
             endScope();
         }
@@ -743,6 +747,10 @@ class ScopeAsyncRetryTest {
                 Future<String> tmpFuture = futures.poll();
                 assertThrows(Throwable.class, tmpFuture::get);
             }
+            // get() 返回时 direct executor 上的回调可能还没有执行完，等最后几个回调结束
+            for (int i = 0; i < 100 && failCount.get() + succCount.get() < calls; i++) {
+                sleepUninterruptibly(10, MILLISECONDS);
+            }
             assertEquals(calls, failCount.get());
             assertEquals(0, succCount.get());
         } finally {
@@ -750,6 +758,227 @@ class ScopeAsyncRetryTest {
         }
     }
 
+    @Test
+    void testTimeoutPurgedAfterComplete() throws Throwable {
+        ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1);
+        ScopeAsyncRetry scopeAsyncRetry = createScopeAsyncRetry(timeoutScheduler, directExecutor());
+        try {
+            for (int i = 0; i < 1000; i++) {
+                ListenableFuture<String> future = scopeAsyncRetry.callWithRetry(SECONDS.toMillis(10),
+                        retryNTimes(3), () -> Futures.immediateFuture("test"));
+                assertEquals("test", future.get());
+            }
+            // 已经完成的调用不应该在调度器中留下超时检测任务
+            assertEquals(0, timeoutScheduler.getQueue().size());
+
+            ListenableFuture<String> future = scopeAsyncRetry.callWithRetry(SECONDS.toMillis(10),
+                    retryNTimes(3, SECONDS.toMillis(10)), () -> successAfter("test", SECONDS.toMillis(20)));
+            assertEquals(1, timeoutScheduler.getQueue().size());
+            future.cancel(false);
+            assertEquals(0, timeoutScheduler.getQueue().size());
+        } finally {
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void testHedgeAtPercentile() throws Throwable {
+        beginScope();
+        try {
+            initKey();
+            RetryPolicy policy = hedgeAtPercentile(1, 0.9, 1.0);
+            warmUp(policy);
+            assertEquals(200, ((AdaptiveHedgePolicy) policy).samples());
+            AtomicInteger calls = new AtomicInteger();
+            ListenableFuture<String> future = retrier.callWithRetry(3000, policy,
+                    () -> calls.incrementAndGet() == 1 ? successAfter("slow", 2000) : successAfter("fast", 10));
+            // 第一次尝试超过 p90 还没完成，就提前发起第二次尝试，不用等到 3s 超时
+            assertEquals("fast", future.get(1, SECONDS));
+            assertEquals(2, calls.get());
+            // 只有赢了的第二次尝试计入样本，被放弃的第一次尝试的耗时是截断的，不能记进去
+            sleepUninterruptibly(100, MILLISECONDS);
+            assertEquals(201, ((AdaptiveHedgePolicy) policy).samples());
+
+            RetryPolicy noHedgeBudget = hedgeAtPercentile(1, 0.9, 0);
+            warmUp(noHedgeBudget);
+            calls.set(0);
+            ListenableFuture<String> future2 = retrier.callWithRetry(3000, noHedgeBudget,
+                    () -> calls.incrementAndGet() == 1 ? successAfter("slow", 2000) : successAfter("fast", 10));
+            // 没有 hedge 的额度，只能等第一次尝试
+            assertThrows(TimeoutException.class, () -> future2.get(1, SECONDS));
+            assertEquals("slow", future2.get(3, SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            endScope();
+        }
+    }
+
+    @Test
+    void testRetryBudget() {
+        RetryPolicy policy = retryNTimes(3).withBudget(RetryBudget.create(0, ofSeconds(10), 2));
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            ListenableFuture<String> future = retrier.callWithRetry(100, policy, () -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException();
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // 第一次调用用完了 2 次重试的预算，之后的调用都不再重试
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    void testHedgeReleasedWhenBudgetExhausted() throws Throwable {
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        RetryPolicy hedgePolicy = new RetryPolicy() {
+
+            @Override
+            public long retry(int retryCount) {
+                return retryCount <= 1 ? 0 : NO_RETRY;
+            }
+
+            @Override
+            public long hedgeDelay(long singleCallTimeoutMs) {
+                return 50;
+            }
+
+            @Override
+            public boolean acquireHedge() {
+                acquired.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            public void releaseHedge() {
+                released.incrementAndGet();
+            }
+        };
+        RetryPolicy policy = hedgePolicy.withBudget(RetryBudget.create(0, ofSeconds(10), 0));
+        beginScope();
+        try {
+            initKey();
+            AtomicInteger calls = new AtomicInteger();
+            ListenableFuture<String> future = retrier.callWithRetry(1000, policy, () -> {
+                calls.incrementAndGet();
+                return successAfter("slow", 300);
+            });
+            assertEquals("slow", future.get(1, SECONDS));
+            // hedge 已经到期，但是预算不足没有发起，拿到的 hedge 额度要还回去
+            assertEquals(1, calls.get());
+            assertEquals(1, acquired.get());
+            assertEquals(1, released.get());
+        } finally {
+            endScope();
+        }
+    }
+
+    @Test
+    void testReleasedAttemptsNotReported() throws Throwable {
+        AtomicInteger samples = new AtomicInteger();
+        RetryPolicy policy = new RetryPolicy() {
+
+            @Override
+            public long retry(int retryCount) {
+                return retryCount <= 1 ? 0 : NO_RETRY;
+            }
+
+            @Override
+            public long hedgeDelay(long singleCallTimeoutMs) {
+                return 50;
+            }
+
+            @Override
+            public void onAttemptComplete(long costNanos) {
+                samples.incrementAndGet();
+            }
+        };
+        AtomicInteger failures = new AtomicInteger();
+        FutureCallback<String> eachRetryCallback = new FutureCallback<String>() {
+
+            @Override
+            public void onSuccess(@Nullable String result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failures.incrementAndGet();
+            }
+        };
+        beginScope();
+        try {
+            initKey();
+            AtomicInteger calls = new AtomicInteger();
+            ListenableFuture<String> future = retrier.callWithRetry(3000, policy,
+                    () -> calls.incrementAndGet() == 1 ? successAfter("slow", 2000) : successAfter("fast", 10),
+                    eachRetryCallback);
+            assertEquals("fast", future.get(1, SECONDS));
+            sleepUninterruptibly(100, MILLISECONDS);
+            // hedge 赢了之后被 cancel 掉的第一次尝试不算一次完成的尝试
+            assertEquals(2, calls.get());
+            assertEquals(1, samples.get());
+            assertEquals(0, failures.get());
+
+            // 调用方主动 cancel 也一样
+            samples.set(0);
+            ListenableFuture<String> cancelled = retrier.callWithRetry(3000, policy,
+                    () -> successAfter("slow", 2000), eachRetryCallback);
+            assertTrue(cancelled.cancel(false));
+            sleepUninterruptibly(100, MILLISECONDS);
+            assertEquals(0, samples.get());
+            assertEquals(0, failures.get());
+        } finally {
+            endScope();
+        }
+    }
+
+    @Test
+    void testDeadline() throws Throwable {
+        AtomicInteger calls = new AtomicInteger();
+        Scope scope = beginScope(ofMillis(300));
+        try {
+            initKey();
+            long start = System.nanoTime();
+            // 第二次尝试的超时时间被截断到剩余的 100ms，之后来不及再重试
+            ListenableFuture<String> future = retrier.callWithRetry(200, retryNTimes(10),
+                    () -> {
+                        calls.incrementAndGet();
+                        return successAfter("test", 1000);
+                    });
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof TimeoutException);
+            assertEquals(2, calls.get());
+            assertTrue(System.nanoTime() - start < MILLISECONDS.toNanos(600));
+            assertTrue(scope.isDeadlineExceeded());
+
+            // 已经过了截止时间的调用直接失败
+            ListenableFuture<String> expired = retrier.callWithRetry(200, retryNTimes(10),
+                    () -> {
+                        calls.incrementAndGet();
+                        return successAfter("test", 10);
+                    });
+            e = assertThrows(ExecutionException.class, expired::get);
+            assertTrue(e.getCause() instanceof TimeoutException);
+            assertEquals(2, calls.get());
+        } finally {
+            endScope();
+        }
+    }
+
+    private void warmUp(RetryPolicy policy) throws Throwable {
+        ConcurrentLinkedQueue<ListenableFuture<String>> futures = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(retrier.callWithRetry(3000, policy, () -> successAfter("test", 10)));
+        }
+        for (ListenableFuture<String> future : futures) {
+            assertEquals("test", future.get());
+        }
+        // 等待分位数的缓存刷新
+        sleepUninterruptibly(200, MILLISECONDS);
+    }
+
     private static class AbortRetryException extends RuntimeException {
     }
 
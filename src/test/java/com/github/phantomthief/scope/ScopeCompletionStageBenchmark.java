@@ -0,0 +1,83 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.supplyWithExistScope;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 三个阶段读取 {@link ScopeKey}：手工用 {@link Scope#supplyWithExistScope} 包装每个回调，
+ * 和通过 {@link ScopeUtils#withCurrentScope(CompletionStage)} 包装一次整条链
+ * <p>
+ * 先注册回调再完成，和真实的异步调用一样，回调需要保存在 future 上
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@org.openjdk.jmh.annotations.State(org.openjdk.jmh.annotations.Scope.Thread)
+public class ScopeCompletionStageBenchmark {
+
+    private static final ScopeKey<Integer> KEY = ScopeKey.allocate();
+
+    @Setup
+    public void setup() {
+        Scope.beginScope();
+        KEY.set(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Scope.endScope();
+    }
+
+    @Benchmark
+    public Object manual() {
+        Scope current = Scope.getCurrentScope();
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        CompletableFuture<Integer> result = source
+                .thenApply(i -> supplyWithExistScope(current, () -> i + KEY.get()))
+                .thenApply(i -> supplyWithExistScope(current, () -> i + KEY.get()))
+                .thenApply(i -> supplyWithExistScope(current, () -> i + KEY.get()));
+        source.complete(0);
+        return result.join();
+    }
+
+    @Benchmark
+    public Object scoped() {
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        CompletionStage<Integer> result = ScopeUtils.withCurrentScope(source)
+                .thenApply(i -> i + KEY.get())
+                .thenApply(i -> i + KEY.get())
+                .thenApply(i -> i + KEY.get());
+        source.complete(0);
+        return result.toCompletableFuture().join();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ScopeCompletionStageBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
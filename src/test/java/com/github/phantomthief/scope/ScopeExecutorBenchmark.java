@@ -0,0 +1,75 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.concurrent.ExecutorService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 通过 {@link ScopeUtils#wrap(ExecutorService)} 提交一个任务的额外开销，用 direct executor 排除线程切换的影响
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@org.openjdk.jmh.annotations.State(org.openjdk.jmh.annotations.Scope.Thread)
+public class ScopeExecutorBenchmark {
+
+    private static final ScopeKey<String> KEY = ScopeKey.allocate();
+
+    private final ExecutorService raw = newDirectExecutorService();
+    private final ExecutorService wrapped = ScopeUtils.wrap(raw);
+
+    @Setup
+    public void setup() {
+        Scope.beginScope();
+        KEY.set("value");
+    }
+
+    @TearDown
+    public void tearDown() {
+        Scope.endScope();
+    }
+
+    @Benchmark
+    public void raw(Blackhole blackhole) {
+        raw.execute(() -> blackhole.consume(KEY.get()));
+    }
+
+    @Benchmark
+    public void wrapped(Blackhole blackhole) {
+        wrapped.execute(() -> blackhole.consume(KEY.get()));
+    }
+
+    @Benchmark
+    public void runAsyncWithCurrentScope(Blackhole blackhole) {
+        ScopeUtils.runAsyncWithCurrentScope(() -> blackhole.consume(KEY.get()), raw);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ScopeExecutorBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
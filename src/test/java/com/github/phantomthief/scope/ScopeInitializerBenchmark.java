@@ -0,0 +1,84 @@
+package com.github.phantomthief.scope;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 64 个线程共享同一个 {@link Scope} 时，读取带 initializer 的 {@link ScopeKey} 的开销
+ *
+ * {@link #initialize} 每 64 次读取换一个新的 {@link Scope}，第一次读取需要初始化，同时到达的其它线程需要等待；
+ * {@link #initialized} 只读取已经初始化好的值
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(64)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@org.openjdk.jmh.annotations.State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class ScopeInitializerBenchmark {
+
+    private static final int READS_PER_SCOPE = 64;
+    private static final ScopeKey<Object> KEY = ScopeKey.withInitializer(() -> {
+        Blackhole.consumeCPU(100);
+        return new Object();
+    });
+
+    private final AtomicReference<Scope> current = new AtomicReference<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private Scope initializedScope;
+
+    @Setup
+    public void setup() {
+        current.set(newScope());
+        initializedScope = newScope();
+        initializedScope.get(KEY);
+    }
+
+    private static Scope newScope() {
+        Scope scope = Scope.beginScope(ScopeStorageType.CONCURRENT);
+        Scope.endScope();
+        return scope;
+    }
+
+    @Benchmark
+    public Object initialize() {
+        Scope scope = current.get();
+        Object value = scope.get(KEY);
+        if (reads.incrementAndGet() % READS_PER_SCOPE == 0) {
+            current.set(newScope());
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Object initialized() {
+        return initializedScope.get(KEY);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ScopeInitializerBenchmark.class.getName())
+                .build();
+        new Runner(options).run();
+    }
+}
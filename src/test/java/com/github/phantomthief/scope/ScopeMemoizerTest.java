@@ -0,0 +1,114 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.getCurrentScope;
+import static com.github.phantomthief.scope.Scope.runWithExistScope;
+import static com.github.phantomthief.scope.Scope.runWithNewScope;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+class ScopeMemoizerTest {
+
+    @Test
+    void testMemoize() {
+        AtomicInteger calls = new AtomicInteger();
+        ScopeMemoizer<Integer, String> memoizer = ScopeMemoizer.memoize(2, i -> {
+            calls.incrementAndGet();
+            return i == 0 ? null : "value" + i;
+        });
+
+        // 不在 Scope 中时不缓存
+        assertEquals("value1", memoizer.get(1));
+        assertEquals("value1", memoizer.get(1));
+        assertEquals(2, calls.get());
+
+        runWithNewScope(() -> {
+            calls.set(0);
+            assertEquals("value1", memoizer.get(1));
+            assertEquals("value1", memoizer.get(1));
+            assertNull(memoizer.get(0));
+            assertNull(memoizer.get(0));
+            assertEquals(2, calls.get());
+            assertEquals(2, memoizer.cachedSize());
+
+            // 超过上限的参数不再缓存
+            assertEquals("value2", memoizer.get(2));
+            assertEquals("value2", memoizer.get(2));
+            assertEquals(4, calls.get());
+            assertEquals(2, memoizer.cachedSize());
+        });
+
+        runWithNewScope(() -> {
+            assertEquals(0, memoizer.cachedSize());
+            assertEquals("value1", memoizer.get(1));
+            assertEquals(5, calls.get());
+        });
+    }
+
+    @Test
+    void testSharedScope() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ScopeMemoizer<Integer, ListenableFuture<String>> memoizer = ScopeMemoizer.memoizeAsync(i -> {
+            calls.incrementAndGet();
+            return SettableFuture.create();
+        });
+        ExecutorService executor = newFixedThreadPool(8);
+        runWithNewScope(() -> {
+            Scope scope = getCurrentScope();
+            List<Future<ListenableFuture<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> {
+                    AtomicReference<ListenableFuture<String>> result = new AtomicReference<>();
+                    runWithExistScope(scope, () -> result.set(memoizer.get(1)));
+                    return result.get();
+                }));
+            }
+            ListenableFuture<String> first = futures.get(0).get();
+            for (Future<ListenableFuture<String>> future : futures) {
+                assertSame(first, future.get());
+            }
+            assertEquals(1, calls.get());
+        });
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testAsyncFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ScopeMemoizer<Integer, ListenableFuture<String>> memoizer = ScopeMemoizer.memoizeAsync(i -> {
+            if (calls.incrementAndGet() == 1) {
+                return immediateFailedFuture(new IllegalStateException());
+            }
+            return immediateFuture("value" + i);
+        });
+        runWithNewScope(() -> {
+            memoizer.get(1);
+            // 失败的结果不缓存
+            assertEquals(0, memoizer.cachedSize());
+            assertEquals("value1", memoizer.get(1).get());
+            assertEquals("value1", memoizer.get(1).get());
+            assertEquals(2, calls.get());
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.runWithNewScope;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+class ScopeNettyUtilsTest {
+
+    private final ScopeKey<String> key = ScopeKey.allocate();
+
+    @Test
+    void testEventExecutorGroup() throws Exception {
+        DefaultEventExecutorGroup raw = new DefaultEventExecutorGroup(2);
+        EventExecutorGroup group = ScopeNettyUtils.wrap(raw);
+        assertSame(group, ScopeNettyUtils.wrap(group));
+        EventExecutor executor = group.next();
+        assertSame(executor, ScopeNettyUtils.wrap(executor));
+
+        // 不在 Scope 中时原样执行
+        assertNull(group.submit(key::get).get());
+
+        runWithNewScope(() -> {
+            key.set("netty");
+            assertEquals("netty", group.submit(key::get).get(1, SECONDS));
+            assertEquals("netty", executor.submit(key::get).get(1, SECONDS));
+            assertEquals("netty", group.schedule(key::get, 10, MILLISECONDS).get(1, SECONDS));
+            CountDownLatch executed = new CountDownLatch(2);
+            for (EventExecutor child : group) {
+                child.execute(() -> {
+                    if ("netty".equals(key.get())) {
+                        executed.countDown();
+                    }
+                });
+            }
+            assertTrue(executed.await(1, SECONDS));
+
+            AtomicInteger matched = new AtomicInteger();
+            CountDownLatch periodic = new CountDownLatch(3);
+            ScheduledFuture<?> scheduled = group.scheduleAtFixedRate(() -> {
+                if ("netty".equals(key.get())) {
+                    matched.incrementAndGet();
+                }
+                periodic.countDown();
+            }, 0, 10, MILLISECONDS);
+            assertTrue(periodic.await(1, SECONDS));
+            scheduled.cancel(false);
+            assertTrue(matched.get() >= 3);
+        });
+
+        // event loop 线程上不会残留 Scope
+        assertNull(executor.submit(key::get).get());
+        raw.shutdownGracefully(0, 1, SECONDS).sync();
+    }
+
+    @Test
+    void testFutureListener() throws Exception {
+        DefaultEventExecutorGroup raw = new DefaultEventExecutorGroup(1);
+        EventExecutor executor = raw.next();
+        Promise<String> promise = executor.newPromise();
+        CountDownLatch notified = new CountDownLatch(1);
+        String[] valueInListener = new String[1];
+        GenericFutureListener<Future<String>> listener = future -> {
+            valueInListener[0] = key.get();
+            notified.countDown();
+        };
+        assertSame(listener, ScopeNettyUtils.wrap(listener));
+        runWithNewScope(() -> {
+            key.set("listener");
+            promise.addListener(ScopeNettyUtils.wrap(listener));
+        });
+        // Scope 结束之后在 event loop 上完成
+        executor.execute(() -> promise.setSuccess("done"));
+        assertTrue(notified.await(1, SECONDS));
+        assertEquals("listener", valueInListener[0]);
+        raw.shutdownGracefully(0, 1, SECONDS).sync();
+    }
+}
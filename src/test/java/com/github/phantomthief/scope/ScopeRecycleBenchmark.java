@@ -0,0 +1,68 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.ScopeKey.allocate;
+import static com.github.phantomthief.scope.ScopeKey.withInitializer;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 一次请求的 {@link com.github.phantomthief.scope.Scope} 生命周期（开始、读写几个 {@link ScopeKey}、结束）的开销
+ *
+ * 直接运行 {@link #main} 会带上 -prof gc，对比关闭和开启 {@link com.github.phantomthief.scope.Scope#SCOPE_RECYCLE_POOL_SIZE}
+ * 时的耗时和内存分配
+ *
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+@BenchmarkMode(AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class ScopeRecycleBenchmark {
+
+    private static final ScopeKey<Integer> INT_KEY = allocate();
+    private static final ScopeKey<String> STRING_KEY = allocate();
+    private static final ScopeKey<Object> INIT_KEY = withInitializer(Object::new);
+    private static final Integer VALUE = 1;
+
+    @Benchmark
+    public Object lifecycle() {
+        com.github.phantomthief.scope.Scope.beginScope();
+        try {
+            INT_KEY.set(VALUE);
+            STRING_KEY.set("test");
+            INIT_KEY.get();
+            return INT_KEY.get();
+        } finally {
+            com.github.phantomthief.scope.Scope.endScope();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int poolSize : new int[] {0, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(ScopeRecycleBenchmark.class.getName())
+                    .addProfiler(GCProfiler.class)
+                    .jvmArgsAppend("-D" + com.github.phantomthief.scope.Scope.SCOPE_RECYCLE_POOL_SIZE + "=" + poolSize)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
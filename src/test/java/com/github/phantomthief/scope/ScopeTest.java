@@ -1,6 +1,7 @@
 package com.github.phantomthief.scope;
 
 import static com.github.phantomthief.scope.Scope.getCurrentScope;
+import static com.github.phantomthief.scope.Scope.runWithChildScope;
 import static com.github.phantomthief.scope.Scope.runWithExistScope;
 import static com.github.phantomthief.scope.Scope.runWithNewScope;
 import static com.github.phantomthief.scope.ScopeKey.allocate;
@@ -9,9 +10,15 @@ import static com.github.phantomthief.scope.ScopeKey.withInitializer;
 import static com.github.phantomthief.scope.ScopeUtils.runAsyncWithCurrentScope;
 import static com.github.phantomthief.scope.ScopeUtils.supplyAsyncWithCurrentScope;
 import static com.github.phantomthief.util.MoreFunctions.throwing;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.DAYS;
@@ -20,7 +27,9 @@ import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -28,15 +37,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 
@@ -47,6 +61,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -138,6 +153,278 @@ class ScopeTest {
         });
     }
 
+    @Test
+    void testInitConcurrent() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        ScopeKey<Object> test2 = withInitializer(() -> {
+            sleepUninterruptibly(50, MILLISECONDS);
+            if (counter.incrementAndGet() == 1) {
+                throw new IllegalStateException();
+            }
+            return new Object();
+        });
+        ExecutorService executor = newFixedThreadPool(64);
+        runWithNewScope(() -> {
+            Scope scope = getCurrentScope();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Object[] result = new Object[1];
+                    runWithExistScope(scope, () -> result[0] = test2.get());
+                    return result[0];
+                }));
+            }
+            start.countDown();
+            Object value = null;
+            int failed = 0;
+            for (Future<Object> future : futures) {
+                try {
+                    Object result = future.get();
+                    if (value == null) {
+                        value = result;
+                    }
+                    assertSame(value, result);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                    failed++;
+                }
+            }
+            // 第一次初始化失败后，等待的线程中只有一个重新初始化
+            assertEquals(1, failed);
+            assertEquals(2, counter.get());
+        });
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testInitRecursive() {
+        AtomicReference<ScopeKey<Object>> self = new AtomicReference<>();
+        self.set(withInitializer(() -> self.get().get()));
+        runWithNewScope(() -> assertThrows(IllegalStateException.class, self.get()::get));
+    }
+
+    @Test
+    void testAsyncInitializer() throws Exception {
+        ExecutorService executor = newFixedThreadPool(4);
+        AtomicInteger counter = new AtomicInteger();
+        ScopeKey<String> a = ScopeKey.withAsyncInitializer(executor, () -> {
+            counter.incrementAndGet();
+            sleepUninterruptibly(200, MILLISECONDS);
+            return "a";
+        });
+        ScopeKey<String> b = ScopeKey.withAsyncInitializer(executor, () -> {
+            counter.incrementAndGet();
+            sleepUninterruptibly(200, MILLISECONDS);
+            return "b";
+        });
+        ScopeKey<String> c = ScopeKey.withAsyncInitializer(executor, () -> a.get() + b.get() + TEST_KEY.get(), a, b);
+        assertNull(c.get());
+        assertNull(c.getAsync().get());
+        runWithNewScope(() -> {
+            TEST_KEY.set(1);
+            long start = System.nanoTime();
+            getCurrentScope().prefetch(c);
+            assertFalse(c.getAsync().isDone());
+            // 依赖是并行初始化的
+            assertEquals("ab1", c.get());
+            assertTrue(System.nanoTime() - start < MILLISECONDS.toNanos(380));
+            assertEquals("ab1", c.get());
+            assertEquals("a", a.get());
+            assertEquals(2, counter.get());
+        });
+
+        AtomicInteger failed = new AtomicInteger();
+        ScopeKey<String> failure = ScopeKey.withAsyncInitializer(executor, () -> {
+            if (failed.incrementAndGet() == 1) {
+                throw new IllegalStateException();
+            }
+            return "ok";
+        });
+        runWithNewScope(() -> {
+            assertThrows(IllegalStateException.class, failure::get);
+            // 失败之后重新初始化
+            assertEquals("ok", failure.get());
+            assertEquals(2, failed.get());
+        });
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testRecycle() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Scope.setRecyclePoolSize(4);
+        try {
+            Scope scope = Scope.beginScope();
+            TEST_KEY.set(1);
+            Scope.endScope();
+            assertSame(scope, Scope.beginScope());
+            // 回收时数据已经清空
+            assertNull(TEST_KEY.get());
+            Scope.endScope();
+
+            // 异步任务还没结束时不能回收
+            scope = Scope.beginScope();
+            CountDownLatch latch = new CountDownLatch(1);
+            runAsyncWithCurrentScope(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }, executor);
+            Future<?> future = executor.submit(() -> { });
+            Scope.endScope();
+            Scope another = Scope.beginScope();
+            assertNotSame(scope, another);
+            Scope.endScope();
+            latch.countDown();
+            future.get();
+
+            // 通过 getCurrentScope 拿到过的不再回收
+            scope = Scope.beginScope();
+            assertSame(scope, getCurrentScope());
+            Scope.endScope();
+            assertNotSame(scope, Scope.beginScope());
+            Scope.endScope();
+        } finally {
+            Scope.setRecyclePoolSize(0);
+        }
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testRecycleAfterRejected() throws Exception {
+        ExecutorService rejecting = ScopeUtils.wrap(Executors.newSingleThreadExecutor());
+        rejecting.shutdown();
+        ExecutorService executor = ScopeUtils.wrap(Executors.newSingleThreadExecutor());
+        Scope.setRecyclePoolSize(4);
+        try {
+            // 被拒绝的任务释放引用，Scope 结束后可以回收
+            Scope scope = Scope.beginScope();
+            assertThrows(RejectedExecutionException.class, () -> rejecting.execute(() -> { }));
+            assertThrows(RejectedExecutionException.class, () -> rejecting.submit(() -> 1));
+            assertThrows(RejectedExecutionException.class, () -> rejecting.invokeAll(singletonList((Callable<Integer>) () -> 1)));
+            assertThrows(RejectedExecutionException.class, () -> runAsyncWithCurrentScope(() -> { }, rejecting));
+            Scope.endScope();
+            assertSame(scope, Scope.beginScope());
+            Scope.endScope();
+
+            // shutdownNow 取出的任务也一样，之后再执行会被取消
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(() -> awaitUninterruptibly(latch));
+            scope = Scope.beginScope();
+            executor.execute(() -> { });
+            Scope.endScope();
+            List<Runnable> drained = executor.shutdownNow();
+            assertEquals(1, drained.size());
+            assertSame(scope, Scope.beginScope());
+            Scope.endScope();
+            assertThrows(CancellationException.class, () -> drained.get(0).run());
+            latch.countDown();
+        } finally {
+            Scope.setRecyclePoolSize(0);
+        }
+        assertTrue(executor.awaitTermination(1, DAYS));
+    }
+
+    @Test
+    void testRecycleWithFutureCallback() {
+        Scope.setRecyclePoolSize(4);
+        try {
+            // 同一个 callback 添加到两个 future 上，第一次回调之后 Scope 也不能被回收
+            List<Integer> values = new ArrayList<>();
+            Scope scope = Scope.beginScope();
+            TEST_KEY.set(1);
+            FutureCallback<Integer> callback = ScopeUtils.wrapWithScope(new FutureCallback<Integer>() {
+
+                @Override
+                public void onSuccess(@Nullable Integer result) {
+                    values.add(TEST_KEY.get());
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    values.add(TEST_KEY.get());
+                }
+            });
+            SettableFuture<Integer> first = SettableFuture.create();
+            SettableFuture<Integer> second = SettableFuture.create();
+            Futures.addCallback(first, callback, directExecutor());
+            Futures.addCallback(second, callback, directExecutor());
+            Scope.endScope();
+
+            first.set(1);
+            Scope another = Scope.beginScope();
+            assertNotSame(scope, another);
+            TEST_KEY.set(2);
+            second.setException(new IllegalStateException());
+            Scope.endScope();
+            assertEquals(asList(1, 1), values);
+        } finally {
+            Scope.setRecyclePoolSize(0);
+        }
+    }
+
+    @Test
+    void testChildScope() {
+        ScopeKey<String> childKey = allocate();
+        AtomicInteger initCount = new AtomicInteger();
+        ScopeKey<Integer> initKey = withInitializer(initCount::incrementAndGet);
+        runWithNewScope(() -> {
+            Scope parent = getCurrentScope();
+            TEST_KEY.set(1);
+            childKey.set("parent");
+            runWithChildScope(() -> {
+                Scope child = getCurrentScope();
+                assertNotSame(parent, child);
+                assertEquals(1, TEST_KEY.get());
+                childKey.set("child");
+                assertEquals("child", childKey.get());
+                assertEquals("parent", parent.get(childKey));
+                // 没有写过的 key 能看到上层之后的修改
+                parent.set(TEST_KEY, 2);
+                assertEquals(2, TEST_KEY.get());
+                // initializer 在上层执行，和上层共享
+                assertEquals(1, initKey.get());
+
+                runWithChildScope(() -> {
+                    assertEquals("child", childKey.get());
+                    childKey.set(null);
+                    assertEquals("child", childKey.get());
+                });
+
+                // 快照合并了上层的数据
+                Scope snapshot = child.snapshot();
+                assertEquals("child", snapshot.get(childKey));
+                assertEquals(2, snapshot.get(TEST_KEY));
+                assertEquals(1, snapshot.get(initKey));
+                assertSame(child, getCurrentScope());
+            });
+            assertSame(parent, getCurrentScope());
+            assertEquals("parent", childKey.get());
+            assertEquals(1, initKey.get());
+            assertEquals(1, initCount.get());
+
+            for (int i = 0; i < Scope.MAX_CHILD_DEPTH; i++) {
+                Scope.beginChildScope();
+            }
+            assertThrows(IllegalStateException.class, Scope::beginChildScope);
+            for (int i = 0; i < Scope.MAX_CHILD_DEPTH; i++) {
+                Scope.endScope();
+            }
+            assertSame(parent, getCurrentScope());
+        });
+
+        // 不在 Scope 中时和 beginScope 相同
+        runWithChildScope(() -> {
+            TEST_KEY.set(3);
+            assertEquals(3, TEST_KEY.get());
+        });
+        assertNull(getCurrentScope());
+    }
+
     @Test
     void testDefaultValue() {
         ScopeKey<String> key1 = withDefaultValue("test");
@@ -172,6 +459,154 @@ class ScopeTest {
         });
     }
 
+    @Test
+    void testKeyAllocatedInScope() throws Exception {
+        ExecutorService executor = newFixedThreadPool(8);
+        runWithNewScope(() -> {
+            TEST_KEY.set(1);
+            List<ScopeKey<Integer>> keys = new ArrayList<>();
+            List<Callable<Object>> tasks = new ArrayList<>();
+            Scope scope = getCurrentScope();
+            for (int i = 0; i < 1000; i++) {
+                ScopeKey<Integer> key = allocate();
+                keys.add(key);
+                int j = i;
+                tasks.add(() -> {
+                    runWithExistScope(scope, () -> key.set(j));
+                    return null;
+                });
+            }
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(Integer.valueOf(i), keys.get(i).get());
+            }
+            assertEquals(Integer.valueOf(1), TEST_KEY.get());
+        });
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testStorageTypes() throws Exception {
+        ExecutorService executor = newFixedThreadPool(8);
+        AtomicInteger counter = new AtomicInteger();
+        ScopeKey<Integer> initKey = withInitializer(counter::incrementAndGet);
+        ScopeKey<String> defaultKey = withDefaultValue("default");
+        for (ScopeStorageType type : ScopeStorageType.values()) {
+            runWithNewScope(type, () -> {
+                assertEquals("default", defaultKey.get());
+                assertNull(TEST_KEY.get());
+                TEST_KEY.set(1);
+                assertEquals(Integer.valueOf(1), TEST_KEY.get());
+                TEST_KEY.set(null);
+                assertNull(TEST_KEY.get());
+                Integer initialized = initKey.get();
+                assertEquals(initialized, initKey.get());
+                if (type == ScopeStorageType.SINGLE_THREAD) {
+                    return;
+                }
+                Scope scope = getCurrentScope();
+                List<Callable<Integer>> tasks = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    ScopeKey<Integer> key = allocate();
+                    int j = i;
+                    tasks.add(() -> Scope.supplyWithExistScope(scope, () -> {
+                        key.set(j);
+                        assertEquals(initialized, initKey.get());
+                        return key.get();
+                    }));
+                }
+                int i = 0;
+                for (Future<Integer> future : executor.invokeAll(tasks)) {
+                    assertEquals(Integer.valueOf(i++), future.get());
+                }
+            });
+        }
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testSnapshot() throws Exception {
+        ExecutorService executor = newFixedThreadPool(4);
+        ScopeKey<String> key1 = allocate();
+        for (ScopeStorageType type : ScopeStorageType.values()) {
+            runWithNewScope(type, () -> {
+                TEST_KEY.set(1);
+                Scope snapshot = getCurrentScope().snapshot();
+                TEST_KEY.set(2);
+                key1.set("parent");
+                assertEquals(Integer.valueOf(1), snapshot.get(TEST_KEY));
+                assertNull(snapshot.get(key1));
+
+                snapshot.set(key1, "child");
+                assertEquals("parent", key1.get());
+                assertEquals("child", snapshot.get(key1));
+
+                Scope snapshotOfSnapshot = snapshot.snapshot();
+                snapshot.set(TEST_KEY, 3);
+                assertEquals(Integer.valueOf(1), snapshotOfSnapshot.get(TEST_KEY));
+                assertEquals("child", snapshotOfSnapshot.get(key1));
+            });
+        }
+
+        runWithNewScope(() -> {
+            TEST_KEY.set(1);
+            CountDownLatch latch = new CountDownLatch(1);
+            ListeningExecutorService listeningExecutor = listeningDecorator(executor);
+            ListenableFuture<?> future = ScopeUtils.runAsyncWithScopeSnapshot(() -> {
+                assertEquals(Integer.valueOf(1), TEST_KEY.get());
+                TEST_KEY.set(2);
+                latch.countDown();
+            }, listeningExecutor);
+            latch.await();
+            future.get();
+            assertEquals(Integer.valueOf(1), TEST_KEY.get());
+            assertEquals(Integer.valueOf(1),
+                    ScopeUtils.supplyAsyncWithScopeSnapshot(TEST_KEY::get, listeningExecutor).get());
+        });
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testDeadline() throws Exception {
+        runWithNewScope(() -> {
+            Scope scope = getCurrentScope();
+            assertEquals(Long.MAX_VALUE, scope.remainingNanos());
+            assertFalse(scope.isDeadlineExceeded());
+            scope.setDeadlineAfter(ofSeconds(10));
+            long remaining = scope.remainingNanos();
+            assertTrue(remaining > 0 && remaining <= ofSeconds(10).toNanos());
+            // 截止时间只会收紧
+            scope.setDeadlineAfter(ofSeconds(20));
+            assertTrue(scope.remainingNanos() <= remaining);
+            scope.setDeadlineAfter(ofMillis(10));
+            assertTrue(scope.remainingNanos() <= ofMillis(10).toNanos());
+            assertTrue(scope.snapshot().remainingNanos() <= ofMillis(10).toNanos());
+            sleepUninterruptibly(20, MILLISECONDS);
+            assertTrue(scope.isDeadlineExceeded());
+        });
+
+        ListeningExecutorService executor = listeningDecorator(Executors.newSingleThreadExecutor());
+        Scope scope = Scope.beginScope(ofMillis(100));
+        try {
+            assertTrue(scope.remainingNanos() <= ofMillis(100).toNanos());
+            // 占住唯一的线程，让后边的任务在队列里等到截止时间之后
+            executor.execute(() -> sleepUninterruptibly(200, MILLISECONDS));
+            AtomicBoolean ran = new AtomicBoolean();
+            ListenableFuture<?> runFuture = ScopeUtils.runAsyncWithScopeSnapshot(() -> ran.set(true), executor);
+            ListenableFuture<Integer> supplyFuture = ScopeUtils.supplyAsyncWithScopeSnapshot(() -> 1, executor);
+            ExecutionException e = assertThrows(ExecutionException.class, runFuture::get);
+            assertTrue(e.getCause() instanceof CancellationException);
+            assertFalse(ran.get());
+            e = assertThrows(ExecutionException.class, supplyFuture::get);
+            assertTrue(e.getCause() instanceof CancellationException);
+        } finally {
+            Scope.endScope();
+        }
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
     @Test
     void testRemoveKey() {
         runWithNewScope(() -> {
@@ -13,8 +13,11 @@ import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
@@ -26,6 +29,10 @@ import com.google.common.collect.ImmutableSet;
  *
  * com.github.phantomthief.scope.ScopeThreadLocalBenchmark.* --jvmArgs "-Djmh.executor=CUSTOM -Djmh.executor.class=com.github.phantomthief.scope.FastThreadLocalExecutor"
  *
+ * thread local 的实现在第一次使用之后就固定了（参考 {@link SubstituteThreadLocal}），
+ * 所以通过 {@link #fastThreadLocal} 参数在每个 fork 开始时选择实现，而不是在每次调用时切换；
+ * {@link #benchmarkCurrentScope} 和 {@link #benchmarkRealThreadLocal} 对比经过 {@link SubstituteThreadLocal} 和直接读取真正实现的开销
+ *
  * @author w.vela
  * Created on 2019-07-08.
  */
@@ -43,9 +50,38 @@ public class ScopeThreadLocalBenchmark {
     private static ScopeKey<Integer> intScopeKey = withDefaultValue(122);
     private static ScopeKey<Set<String>> setScopeKey = withInitializer(() -> ImmutableSet.of("11", "22", "33"));
 
+    private static final MyThreadLocal<Object> JDK_THREAD_LOCAL = new JdkThreadLocal<>();
+    private static final MyThreadLocal<Object> FAST_THREAD_LOCAL = new AdaptiveThreadLocal<>();
+
+    @Param({"false", "true"})
+    private boolean fastThreadLocal;
+
+    @Setup
+    public void setup() {
+        if (!setFastThreadLocal(fastThreadLocal)) {
+            throw new IllegalStateException("fail to switch thread local implements.");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InScope {
+
+        @Setup
+        public void setup(ScopeThreadLocalBenchmark benchmark) {
+            JDK_THREAD_LOCAL.set(com.github.phantomthief.scope.Scope.beginScope());
+            FAST_THREAD_LOCAL.set(com.github.phantomthief.scope.Scope.currentScope());
+        }
+
+        @TearDown
+        public void tearDown() {
+            com.github.phantomthief.scope.Scope.endScope();
+            JDK_THREAD_LOCAL.remove();
+            FAST_THREAD_LOCAL.remove();
+        }
+    }
+
     @Benchmark
     public void benchmarkGet() {
-        setFastThreadLocal(false);
         longScopeKey.get();
         stringScopeKey.get();
         intScopeKey.get();
@@ -53,11 +89,20 @@ public class ScopeThreadLocalBenchmark {
     }
 
     @Benchmark
-    public void benchmarkFastGet() {
-        setFastThreadLocal(true);
+    public void benchmarkGetInScope(InScope inScope) {
         longScopeKey.get();
         stringScopeKey.get();
         intScopeKey.get();
         setScopeKey.get();
     }
+
+    @Benchmark
+    public Object benchmarkCurrentScope(InScope inScope) {
+        return com.github.phantomthief.scope.Scope.currentScope();
+    }
+
+    @Benchmark
+    public Object benchmarkRealThreadLocal(InScope inScope) {
+        return fastThreadLocal ? FAST_THREAD_LOCAL.get() : JDK_THREAD_LOCAL.get();
+    }
 }
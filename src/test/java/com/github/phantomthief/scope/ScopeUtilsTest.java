@@ -1,20 +1,59 @@
 package com.github.phantomthief.scope;
 
 import static com.github.phantomthief.scope.Scope.runWithNewScope;
+import static com.github.phantomthief.scope.ScopeUtils.runAsyncWithCurrentScope;
+import static com.github.phantomthief.scope.ScopeUtils.runAsyncWithScopeSnapshot;
+import static com.github.phantomthief.scope.ScopeUtils.supplyAsyncWithCurrentScope;
 import static com.github.phantomthief.scope.ScopeUtils.trackLongCost;
+import static com.github.phantomthief.scope.ScopeUtils.withCurrentScope;
+import static com.github.phantomthief.scope.ScopeUtils.wrap;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.time.Duration.ofMillis;
 import static java.time.Duration.ofSeconds;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
 /**
  * @author w.vela
  * Created on 2019-10-22.
@@ -44,6 +83,251 @@ class ScopeUtilsTest {
         });
     }
 
+    @Test
+    void testPooledTrack() {
+        LongCostTracker.Pool pool = new LongCostTracker.Pool(2);
+        LongCostTrack track1 = LongCostTracker.track(ofSeconds(3), this::setAtomicLong, null, pool);
+        LongCostTrack track2 = LongCostTracker.track(ofSeconds(3), this::setAtomicLong, null, pool);
+        assertNotSame(track1, track2);
+        track1.close();
+        track1.close();
+        LongCostTrack track3 = LongCostTracker.track(ofSeconds(3), this::setAtomicLong, null, pool);
+        // 池用完时会顺手回收已经关闭的追踪
+        assertSame(track1, track3);
+        track2.close();
+        track3.close();
+    }
+
+    @Test
+    void testPooledTrackExpired() throws Exception {
+        LongCostTracker.Pool pool = new LongCostTracker.Pool(1);
+        CountDownLatch reported = new CountDownLatch(1);
+        LongCostTrack expired = LongCostTracker.track(ofMillis(1), cost -> reported.countDown(), null, pool);
+        assertTrue(reported.await(1, SECONDS));
+        // 到期时没有关闭的追踪不再复用，池会补充一个新的，而不是退化为不复用
+        LongCostTrackImpl track = (LongCostTrackImpl) LongCostTracker.track(ofSeconds(3), this::setAtomicLong, null, pool);
+        assertNotSame(expired, track);
+        assertSame(pool, track.pool);
+        expired.close();
+        track.close();
+    }
+
+    @Test
+    void testWrapExecutor() throws Exception {
+        ExecutorService executor = wrap(newFixedThreadPool(2));
+        assertSame(executor, wrap(executor));
+        ListeningExecutorService listeningExecutor = wrap(listeningDecorator(newFixedThreadPool(2)));
+        ScheduledExecutorService scheduledExecutor = wrap(newScheduledThreadPool(2));
+
+        // 不在 Scope 中提交的任务原样执行
+        assertNull(executor.submit(key::get).get());
+
+        runWithNewScope(() -> {
+            key.set("wrap");
+            assertEquals("wrap", executor.submit(key::get).get());
+            assertEquals("wrap", supplyAsyncWithCurrentScope(key::get, executor).get());
+            CountDownLatch executed = new CountDownLatch(1);
+            executor.execute(() -> {
+                if ("wrap".equals(key.get())) {
+                    executed.countDown();
+                }
+            });
+            assertTrue(executed.await(1, SECONDS));
+
+            List<Callable<String>> tasks = IntStream.range(0, 5)
+                    .mapToObj(i -> (Callable<String>) key::get)
+                    .collect(toList());
+            for (Future<String> future : executor.invokeAll(tasks)) {
+                assertEquals("wrap", future.get());
+            }
+            assertEquals("wrap", executor.invokeAny(tasks));
+
+            ListenableFuture<String> listenableFuture = listeningExecutor.submit(key::get);
+            assertEquals("wrap", listenableFuture.get());
+
+            assertEquals("wrap", scheduledExecutor.schedule(key::get, 10, MILLISECONDS).get());
+            AtomicInteger matched = new AtomicInteger();
+            CountDownLatch periodic = new CountDownLatch(3);
+            ScheduledFuture<?> scheduled = scheduledExecutor.scheduleAtFixedRate(() -> {
+                if ("wrap".equals(key.get())) {
+                    matched.incrementAndGet();
+                }
+                periodic.countDown();
+            }, 0, 10, MILLISECONDS);
+            assertTrue(periodic.await(1, SECONDS));
+            scheduled.cancel(false);
+            assertTrue(matched.get() >= 3);
+        });
+
+        // 工作线程上不会残留 Scope
+        assertNull(executor.submit(key::get).get());
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+        shutdownAndAwaitTermination(listeningExecutor, 1, DAYS);
+        shutdownAndAwaitTermination(scheduledExecutor, 1, DAYS);
+    }
+
+    @Test
+    void testDeadlineExceeded() throws Exception {
+        ListeningExecutorService executor = listeningDecorator(newFixedThreadPool(1));
+        ExecutorService wrapped = wrap(executor);
+        ScheduledExecutorService scheduledExecutor = wrap(newScheduledThreadPool(1));
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> awaitUninterruptibly(blocker));
+
+        AtomicInteger executed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicReference<ScheduledFuture<?>> periodic = new AtomicReference<>();
+        runWithNewScope(() -> {
+            Scope.getCurrentScope().setDeadlineAfter(ofMillis(50));
+            futures.add(runAsyncWithCurrentScope(executed::incrementAndGet, executor));
+            futures.add(runAsyncWithScopeSnapshot(executed::incrementAndGet, executor));
+            futures.add(supplyAsyncWithCurrentScope(executed::incrementAndGet, executor));
+            futures.add(wrapped.submit((Callable<Integer>) executed::incrementAndGet));
+            futures.add(wrapped.submit((Runnable) executed::incrementAndGet));
+            periodic.set(scheduledExecutor.scheduleAtFixedRate(executed::incrementAndGet, 100, 10, MILLISECONDS));
+        });
+        sleepUninterruptibly(100, MILLISECONDS);
+        blocker.countDown();
+
+        // 排队期间过了截止时间的任务不再执行，调用方拿到的 future 以 CancellationException 失败
+        for (Future<?> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, SECONDS));
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+        // 周期任务也一样，并且不会再被调度
+        ExecutionException e = assertThrows(ExecutionException.class, () -> periodic.get().get(1, SECONDS));
+        assertTrue(e.getCause() instanceof CancellationException);
+        assertTrue(periodic.get().isDone());
+        assertEquals(0, executed.get());
+
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+        shutdownAndAwaitTermination(scheduledExecutor, 1, DAYS);
+    }
+
+    @Test
+    void testCompletionStage() throws Exception {
+        ExecutorService executor = newFixedThreadPool(2);
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> other = new CompletableFuture<>();
+        AtomicReference<CompletionStage<String>> stage = new AtomicReference<>();
+        runWithNewScope(() -> {
+            key.set("stage");
+            CompletionStage<String> scoped = withCurrentScope(source);
+            assertSame(scoped, withCurrentScope(scoped));
+            stage.set(scoped
+                    .thenApplyAsync(value -> value + "-" + key.get(), executor)
+                    .thenCompose(value -> CompletableFuture.supplyAsync(() -> value, executor))
+                    .thenCombineAsync(other, (value, o) -> value + "-" + key.get() + o)
+                    .handle((value, e) -> value + "-" + key.get()));
+        });
+        // Scope 结束之后才在其它线程上完成
+        executor.execute(() -> other.complete("!"));
+        executor.execute(() -> source.complete("source"));
+        assertEquals("source-stage-stage!-stage", stage.get().toCompletableFuture().get(1, SECONDS));
+
+        // 不在 Scope 中时原样返回
+        assertSame(source, withCurrentScope(source));
+        shutdownAndAwaitTermination(executor, 1, DAYS);
+    }
+
+    @Test
+    void testParallelStream() {
+        runWithNewScope(() -> {
+            key.set("stream");
+            Set<String> values = withCurrentScope(IntStream.range(0, 10000).boxed().parallel())
+                    .map(i -> String.valueOf(key.get()))
+                    .collect(toSet());
+            assertEquals(1, values.size());
+            assertTrue(values.contains("stream"));
+        });
+        // 不在 Scope 中时原样返回
+        assertNull(withCurrentScope(IntStream.range(0, 100).boxed().parallel())
+                .map(i -> key.get())
+                .filter(value -> value != null)
+                .findAny()
+                .orElse(null));
+    }
+
+    @Test
+    void testRecursiveTask() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        runWithNewScope(() -> {
+            key.set("1");
+            assertEquals(10000L, pool.invoke(new SumTask(0, 10000)).longValue());
+            AtomicInteger matched = new AtomicInteger();
+            pool.invoke(new CountAction(0, 10000, matched));
+            assertEquals(10000, matched.get());
+        });
+
+        // reinitialize 之后再次执行，仍然绑定创建时的 Scope
+        SumTask task = Scope.supplyWithNewScope(() -> {
+            key.set("2");
+            return new SumTask(0, 100);
+        });
+        assertEquals(200L, pool.invoke(task).longValue());
+        task.reinitialize();
+        assertEquals(200L, pool.invoke(task).longValue());
+        shutdownAndAwaitTermination(pool, 1, DAYS);
+    }
+
+    private class SumTask extends ScopeRecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        SumTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long computeWithScope() {
+            if (to - from <= 100) {
+                long sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += Long.parseLong(key.get());
+                }
+                return sum;
+            }
+            int middle = (from + to) >>> 1;
+            SumTask left = new SumTask(from, middle);
+            SumTask right = new SumTask(middle, to);
+            invokeAll(left, right);
+            return left.join() + right.join();
+        }
+    }
+
+    private class CountAction extends ScopeRecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final AtomicInteger matched;
+
+        CountAction(int from, int to, AtomicInteger matched) {
+            this.from = from;
+            this.to = to;
+            this.matched = matched;
+        }
+
+        @Override
+        protected void computeWithScope() {
+            if (to - from <= 100) {
+                for (int i = from; i < to; i++) {
+                    if ("1".equals(key.get())) {
+                        matched.incrementAndGet();
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CountAction(from, middle, matched), new CountAction(middle, to, matched));
+        }
+    }
+
     private void setAtomicLong(Duration t) {
         logger.info("setting track:{}", t);
         assertTrue(t.toNanos() > SECONDS.toNanos(3));
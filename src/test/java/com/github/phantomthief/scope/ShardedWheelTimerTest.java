@@ -0,0 +1,58 @@
+package com.github.phantomthief.scope;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.phantomthief.scope.RetryTimer.Timeout;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class ShardedWheelTimerTest {
+
+    private final ShardedWheelTimer timer = new ShardedWheelTimer(4, 1, new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("test-wheel-timer-%d")
+            .build());
+
+    @Test
+    void testSchedule() {
+        CountDownLatch latch = new CountDownLatch(100);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            timer.schedule(latch::countDown, 50);
+        }
+        assertTrue(awaitUninterruptibly(latch, 5, SECONDS));
+        assertTrue(System.nanoTime() - start >= MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testCancel() {
+        AtomicBoolean fired = new AtomicBoolean();
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            Timeout timeout = timer.schedule(() -> fired.set(true), 100);
+            timeout.cancel();
+            timeout.cancel();
+            count.incrementAndGet();
+        }
+        timer.schedule(count::decrementAndGet, 1);
+        sleepUninterruptibly(200, MILLISECONDS);
+        assertFalse(fired.get());
+        assertEquals(999, count.get());
+        assertEquals(0, timer.size());
+    }
+}
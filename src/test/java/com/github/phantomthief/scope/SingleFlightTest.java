@@ -0,0 +1,106 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.RetryPolicy.retryNTimes;
+import static com.github.phantomthief.scope.Scope.runWithNewScope;
+import static com.github.phantomthief.scope.ScopeAsyncRetry.createScopeAsyncRetry;
+import static com.github.phantomthief.scope.ScopeAsyncRetry.shared;
+import static com.github.phantomthief.scope.ScopeKey.allocate;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-17.
+ */
+class SingleFlightTest {
+
+    private final ScopeKey<Integer> callerKey = allocate();
+    private final SingleFlight<String, String> singleFlight = SingleFlight.create(shared());
+
+    @Test
+    void testCoalesce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SettableFuture<String> backend = SettableFuture.create();
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        AtomicInteger matchedScopes = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            int caller = i;
+            runWithNewScope(() -> {
+                callerKey.set(caller);
+                ListenableFuture<String> future = singleFlight.callWithRetry("key", 1000, retryNTimes(3),
+                        () -> {
+                            calls.incrementAndGet();
+                            return backend;
+                        });
+                // 完成时绑定的是各自调用方的 Scope
+                future.addListener(() -> {
+                    if (Integer.valueOf(caller).equals(callerKey.get())) {
+                        matchedScopes.incrementAndGet();
+                    }
+                }, directExecutor());
+                futures.add(future);
+            });
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.inFlightSize());
+        backend.set("result");
+        for (ListenableFuture<String> future : futures) {
+            assertEquals("result", future.get(1, SECONDS));
+        }
+        assertEquals(50, matchedScopes.get());
+        assertEquals(0, singleFlight.inFlightSize());
+
+        // 完成之后不再共享，重新发起调用
+        ListenableFuture<String> again = singleFlight.callWithRetry("key", 1000, retryNTimes(3), () -> {
+            calls.incrementAndGet();
+            return backend;
+        });
+        assertEquals("result", again.get(1, SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testCancel() {
+        SettableFuture<String> backend = SettableFuture.create();
+        ListenableFuture<String> first = singleFlight.callWithRetry("cancel", 10000, retryNTimes(3),
+                () -> backend);
+        ListenableFuture<String> second = singleFlight.callWithRetry("cancel", 10000, retryNTimes(3),
+                () -> backend);
+        first.cancel(false);
+        assertFalse(backend.isCancelled());
+        assertFalse(second.isDone());
+        second.cancel(false);
+        assertTrue(backend.isCancelled());
+        assertEquals(0, singleFlight.inFlightSize());
+    }
+
+    @Test
+    void testRejected() {
+        ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor();
+        scheduler.shutdown();
+        SingleFlight<String, String> rejecting = SingleFlight.create(
+                createScopeAsyncRetry(scheduler, directExecutor()));
+        assertThrows(RejectedExecutionException.class,
+                () -> rejecting.callWithRetry("key", 1000, retryNTimes(3), SettableFuture::create));
+        // 同步失败的调用也要从表中移除，之后的调用重新发起
+        assertEquals(0, rejecting.inFlightSize());
+        assertThrows(RejectedExecutionException.class,
+                () -> rejecting.callWithRetry("key", 1000, retryNTimes(3), SettableFuture::create));
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.phantomthief.scope;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+class TimingWheelTest {
+
+    private static final long TICK = MILLISECONDS.toNanos(10);
+    private static final long START = 1234567L;
+
+    @Test
+    void testExpire() {
+        TimingWheel<TestNode> wheel = new TimingWheel<>(TICK, START);
+        List<TestNode> expired = new ArrayList<>();
+        TestNode a = new TestNode(START + 25 * TICK);
+        TestNode b = new TestNode(START + 25 * TICK + 1);
+        wheel.add(a);
+        wheel.add(b);
+        assertEquals(2, wheel.size());
+
+        wheel.advance(START + 24 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 25 * TICK, expired::add);
+        assertEquals(1, expired.size());
+        assertTrue(expired.contains(a));
+        wheel.advance(START + 26 * TICK, expired::add);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(b));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPastDeadline() {
+        TimingWheel<TestNode> wheel = new TimingWheel<>(TICK, START);
+        List<TestNode> expired = new ArrayList<>();
+        wheel.advance(START + 100 * TICK, expired::add);
+        TestNode node = new TestNode(START);
+        wheel.add(node);
+        wheel.advance(START + 100 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 101 * TICK, expired::add);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    void testRemove() {
+        TimingWheel<TestNode> wheel = new TimingWheel<>(TICK, START);
+        List<TestNode> expired = new ArrayList<>();
+        TestNode a = new TestNode(START + 5 * TICK);
+        TestNode b = new TestNode(START + 5 * TICK);
+        TestNode c = new TestNode(START + 5 * TICK);
+        wheel.add(a);
+        wheel.add(b);
+        wheel.add(c);
+        assertTrue(wheel.remove(b));
+        assertFalse(wheel.remove(b));
+        assertEquals(2, wheel.size());
+        wheel.advance(START + 10 * TICK, expired::add);
+        assertEquals(2, expired.size());
+        assertFalse(expired.contains(b));
+        assertFalse(wheel.remove(a));
+
+        // 移除后可以重新加入
+        b.deadlineNanos(START + 20 * TICK);
+        wheel.add(b);
+        wheel.advance(START + 20 * TICK, expired::add);
+        assertEquals(3, expired.size());
+    }
+
+    @Test
+    void testCascade() {
+        TimingWheel<TestNode> wheel = new TimingWheel<>(TICK, START);
+        List<TestNode> nodes = new ArrayList<>();
+        long[] ticks = {63, 64, 65, 4095, 4096, 4097, 300000, 20000000};
+        for (long tick : ticks) {
+            TestNode node = new TestNode(START + tick * TICK);
+            nodes.add(node);
+            wheel.add(node);
+        }
+        for (int i = 0; i < ticks.length; i++) {
+            long tick = ticks[i];
+            List<TestNode> expired = new ArrayList<>();
+            wheel.advance(START + (tick - 1) * TICK, expired::add);
+            assertTrue(expired.isEmpty(), "tick:" + tick);
+            wheel.advance(START + tick * TICK, expired::add);
+            assertEquals(1, expired.size(), "tick:" + tick);
+            assertTrue(expired.contains(nodes.get(i)), "tick:" + tick);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testBeyondMaxTicks() {
+        TimingWheel<TestNode> wheel = new TimingWheel<>(TICK, START);
+        List<TestNode> expired = new ArrayList<>();
+        long tick = (1L << 30) + 100;
+        TestNode node = new TestNode(START + tick * TICK);
+        wheel.add(node);
+        wheel.advance(START + (tick - 1) * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + tick * TICK, expired::add);
+        assertEquals(1, expired.size());
+    }
+
+    private static final class TestNode extends TimingWheel.Node {
+
+        TestNode(long deadlineNanos) {
+            deadlineNanos(deadlineNanos);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.phantomthief.scope;
+
+import static com.github.phantomthief.scope.Scope.runWithNewScope;
+import static com.github.phantomthief.scope.ScopeKey.allocate;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.joinUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 测量每个虚拟线程持有一个 {@link Scope} 时的内存占用，需要在 JDK 21+ 上运行
+ *
+ * 通过设置jvm参数 -DUSE_FAST_THREAD_LOCAL=true 对比 fast thread local 开启时的情况，
+ * 可以通过第一个参数指定虚拟线程的数量，默认 100000
+ *
+ * @author w.vela
+ * Created on 2026-10-16.
+ */
+public class VirtualThreadScopeMemoryBenchmark {
+
+    private static final ScopeKey<String> KEY_1 = allocate();
+    private static final ScopeKey<Long> KEY_2 = allocate();
+
+    public static void main(String[] args) throws Exception {
+        Method startVirtualThread;
+        try {
+            startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            System.out.println("virtual thread is not supported by current jdk:" + System.getProperty("java.version"));
+            return;
+        }
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        System.out.println("fast thread local enabled:" + Scope.fastThreadLocalEnabled());
+
+        CountDownLatch started = new CountDownLatch(count);
+        CountDownLatch finish = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(count);
+        long baseline = usedMemory();
+        for (int i = 0; i < count; i++) {
+            long value = i;
+            threads.add((Thread) startVirtualThread.invoke(null, (Runnable) () -> runWithNewScope(() -> {
+                KEY_1.set("test");
+                KEY_2.set(value);
+                started.countDown();
+                awaitUninterruptibly(finish);
+            })));
+        }
+        awaitUninterruptibly(started);
+        long used = usedMemory() - baseline;
+        finish.countDown();
+        for (Thread thread : threads) {
+            joinUninterruptibly(thread);
+        }
+        System.out.printf("%d virtual threads with scope, %d bytes per thread.%n", count, used / count);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            sleepUninterruptibly(100, MILLISECONDS);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}